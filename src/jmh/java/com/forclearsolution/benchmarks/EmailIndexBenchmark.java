@@ -0,0 +1,40 @@
+package com.forclearsolution.benchmarks;
+
+import com.forclearsolution.services.impl.EmailFingerprintIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailIndexBenchmark {
+
+    @Param({"1000000"})
+    private int users;
+
+    private EmailFingerprintIndex emailIndex;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        emailIndex = new EmailFingerprintIndex(true);
+        for (int i = 0; i < users; i++) {
+            emailIndex.add("user" + i + "@example.com");
+        }
+    }
+
+    @Benchmark
+    public boolean mightContainExisting() {
+        return emailIndex.mightContain("user" + (next++ % users) + "@example.com");
+    }
+
+    @Benchmark
+    public boolean mightContainNew() {
+        return emailIndex.mightContain("new" + next++ + "@example.com");
+    }
+}
@@ -0,0 +1,62 @@
+package com.forclearsolution.benchmarks;
+
+import com.forclearsolution.ForClearSolutionApplication;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// time-to-first-request: every fork is a cold JVM that boots the application, runs the Flyway migration
+// against an in-memory database and answers one GET /users
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class StartupBenchmark {
+
+    @Param({"true", "false"})
+    private boolean lazyInitialization;
+
+    private Path searchIndexDirectory;
+
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        searchIndexDirectory = Files.createTempDirectory("startup-search-index");
+    }
+
+    @Benchmark
+    public int timeToFirstRequest() throws IOException, InterruptedException {
+        context = new SpringApplicationBuilder(ForClearSolutionApplication.class).run(
+                "--server.port=0",
+                "--spring.main.lazy-initialization=" + lazyInitialization,
+                "--spring.datasource.url=jdbc:h2:mem:startup;MODE=MySQL",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect",
+                "--searchIndexDirectory=" + searchIndexDirectory);
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/users")).build();
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(searchIndexDirectory);
+    }
+}
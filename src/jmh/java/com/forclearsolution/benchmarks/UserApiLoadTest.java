@@ -0,0 +1,78 @@
+package com.forclearsolution.benchmarks;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-loop HTTP load driver for a running instance, used to compare the default
+ * Tomcat pool against the virtual-threads profile:
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.forclearsolution.benchmarks.UserApiLoadTest \
+ *     -Dexec.args="http://localhost:8080/users/1 400 30"
+ * </pre>
+ *
+ * Arguments are the target URL, the number of concurrent clients and the duration in seconds.
+ */
+public class UserApiLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        URI target = URI.create(args.length > 0 ? args[0] : "http://localhost:8080/users/1");
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        long durationNanos = TimeUnit.SECONDS.toNanos(args.length > 2 ? Long.parseLong(args[2]) : 30);
+
+        HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        HttpRequest request = HttpRequest.newBuilder(target).GET().build();
+        long[][] latencies = new long[clients][];
+        AtomicInteger errors = new AtomicInteger();
+        long deadline = System.nanoTime() + durationNanos;
+
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            executor.execute(() -> {
+                long[] samples = new long[1024];
+                int count = 0;
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() >= 500) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    if (count == samples.length) {
+                        samples = Arrays.copyOf(samples, count * 2);
+                    }
+                    samples[count++] = System.nanoTime() - start;
+                }
+                latencies[client] = Arrays.copyOf(samples, count);
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(durationNanos + TimeUnit.MINUTES.toNanos(1), TimeUnit.NANOSECONDS);
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        double seconds = durationNanos / 1e9;
+        System.out.printf("requests=%d errors=%d throughput=%.1f req/s%n", all.length, errors.get(), all.length / seconds);
+        if (all.length > 0) {
+            System.out.printf("p50=%.2f ms p99=%.2f ms max=%.2f ms%n",
+                    percentile(all, 0.50), percentile(all, 0.99), all[all.length - 1] / 1e6);
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1e6;
+    }
+}
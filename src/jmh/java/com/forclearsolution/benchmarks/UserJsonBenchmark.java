@@ -0,0 +1,51 @@
+package com.forclearsolution.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.forclearsolution.models.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserJsonBenchmark {
+
+    private ObjectWriter writer;
+
+    private ObjectReader reader;
+
+    private User user;
+
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        // configured like the Spring Boot ObjectMapper the controllers use
+        ObjectMapper objectMapper = new ObjectMapper()
+                .findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        writer = objectMapper.writerFor(User.class);
+        reader = objectMapper.readerFor(User.class);
+        user = new User(1L, "john.doe@example.com", "John", "Doe", LocalDate.of(1990, 5, 15), "kyiv", "+380661234567");
+        json = writer.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return writer.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public User deserialize() throws IOException {
+        return reader.readValue(json);
+    }
+}
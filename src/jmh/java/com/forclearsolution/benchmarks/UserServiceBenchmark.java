@@ -0,0 +1,74 @@
+package com.forclearsolution.benchmarks;
+
+import com.forclearsolution.models.User;
+import com.forclearsolution.repositories.UserRepository;
+import com.forclearsolution.services.impl.EmailFingerprintIndex;
+import com.forclearsolution.services.impl.UserAuditLog;
+import com.forclearsolution.services.impl.UserCacheLoader;
+import com.forclearsolution.services.impl.UserChangeFeed;
+import com.forclearsolution.services.impl.UserChangeTracker;
+import com.forclearsolution.services.impl.UserInserter;
+import com.forclearsolution.services.impl.UserSearchIndex;
+import com.forclearsolution.services.impl.UserServiceImpl;
+import com.forclearsolution.validators.UserValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    private UserServiceImpl userService;
+
+    private User newUser;
+
+    private User update;
+
+    @Setup
+    public void setUp() {
+        // stub-only mocks do not record invocations, so memory stays flat across iterations
+        UserRepository userRepository = mock(UserRepository.class, withSettings().stubOnly());
+        User existingUser = new User(1L, "john.doe@example.com", "John", "Doe", LocalDate.of(1990, 5, 15), "kyiv", "+380661234567");
+        when(userRepository.findById(1L)).thenReturn(Optional.of(existingUser));
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        EntityManager entityManager = mock(EntityManager.class, withSettings().stubOnly());
+        UserChangeTracker changeTracker = new UserChangeTracker();
+        UserAuditLog auditLog = mock(UserAuditLog.class, withSettings().stubOnly());
+        UserChangeFeed changeFeed = mock(UserChangeFeed.class, withSettings().stubOnly());
+
+        userService = new UserServiceImpl(userRepository, entityManager,
+                new UserValidator(18), new ConcurrentMapCacheManager(UserServiceImpl.USERS_CACHE, UserServiceImpl.USER_PAGES_CACHE),
+                new SimpleMeterRegistry(), new EmailFingerprintIndex(false),
+                mock(UserSearchIndex.class, withSettings().stubOnly()), changeTracker, auditLog, changeFeed,
+                new UserInserter(userRepository, entityManager, changeFeed, changeTracker, auditLog),
+                new UserCacheLoader(changeTracker, changeFeed), 5000);
+        newUser = new User(null, "jane.doe@example.com", "Jane", "Doe", LocalDate.of(1992, 8, 21), "lviv", "0661234567");
+        update = new User(null, "john.smith@example.com", "John", "Smith", LocalDate.of(1990, 5, 15), "odesa", "0671234567");
+    }
+
+    @Benchmark
+    public User createUser() {
+        return userService.createUser(newUser);
+    }
+
+    @Benchmark
+    public User updateUser() {
+        return userService.updateUser(update, 1L);
+    }
+}
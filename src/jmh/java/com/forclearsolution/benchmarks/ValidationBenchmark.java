@@ -0,0 +1,73 @@
+package com.forclearsolution.benchmarks;
+
+import com.forclearsolution.models.User;
+import com.forclearsolution.repositories.UserRepository;
+import com.forclearsolution.services.impl.EmailFingerprintIndex;
+import com.forclearsolution.services.impl.UserAuditLog;
+import com.forclearsolution.services.impl.UserCacheLoader;
+import com.forclearsolution.services.impl.UserChangeFeed;
+import com.forclearsolution.services.impl.UserChangeTracker;
+import com.forclearsolution.services.impl.UserInserter;
+import com.forclearsolution.services.impl.UserSearchIndex;
+import com.forclearsolution.services.impl.UserServiceImpl;
+import com.forclearsolution.validators.UserValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private UserValidator userValidator;
+
+    private UserServiceImpl userService;
+
+    private User user;
+
+    @Setup
+    public void setUp() {
+        userValidator = new UserValidator(18);
+        userService = new UserServiceImpl(mock(UserRepository.class, withSettings().stubOnly()),
+                mock(EntityManager.class, withSettings().stubOnly()), userValidator,
+                new ConcurrentMapCacheManager(UserServiceImpl.USERS_CACHE, UserServiceImpl.USER_PAGES_CACHE),
+                new SimpleMeterRegistry(), new EmailFingerprintIndex(false),
+                mock(UserSearchIndex.class, withSettings().stubOnly()), new UserChangeTracker(),
+                mock(UserAuditLog.class, withSettings().stubOnly()),
+                mock(UserChangeFeed.class, withSettings().stubOnly()),
+                mock(UserInserter.class, withSettings().stubOnly()),
+                mock(UserCacheLoader.class, withSettings().stubOnly()), 5000);
+        user = new User(1L, "john.doe@example.com", "John", "Doe", LocalDate.of(1990, 5, 15), "kyiv", "+380661234567");
+    }
+
+    @Benchmark
+    public boolean validateUserAge() {
+        return userService.validateUserAge(user);
+    }
+
+    @Benchmark
+    public boolean validateEmail() {
+        return userValidator.isValidEmail(user.getEmail());
+    }
+
+    @Benchmark
+    public boolean validatePhoneNumber() {
+        return userValidator.isValidPhoneNumber(user.getPhoneNumber());
+    }
+
+    @Benchmark
+    public void validateDateOfBirth() {
+        userService.validateDateOfBirth(user.getDateOfBirth());
+    }
+}
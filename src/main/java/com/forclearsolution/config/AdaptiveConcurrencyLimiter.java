@@ -0,0 +1,76 @@
+package com.forclearsolution.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Caps requests in flight and moves the cap with the time requests spend queued for a database connection:
+// when it stays above the target the cap shrinks by a tenth, otherwise it grows by one per interval (AIMD).
+// Requests over the cap are turned away at once instead of piling onto the pool queue.
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long targetQueueNanos;
+
+    private final long intervalNanos;
+
+    private final LongSupplier queueLatencyNanos;
+
+    private final AtomicInteger limit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong nextAdjustment;
+
+    public AdaptiveConcurrencyLimiter(int minLimit, int maxLimit, long targetQueueNanos, long intervalNanos,
+                                      LongSupplier queueLatencyNanos) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetQueueNanos = targetQueueNanos;
+        this.intervalNanos = intervalNanos;
+        this.queueLatencyNanos = queueLatencyNanos;
+        this.limit = new AtomicInteger(maxLimit);
+        this.nextAdjustment = new AtomicLong(System.nanoTime() + intervalNanos);
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit.get()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+        long due = nextAdjustment.get();
+        long now = System.nanoTime();
+        // whoever moves the deadline first adjusts, everyone else just leaves
+        if (now - due >= 0 && nextAdjustment.compareAndSet(due, now + intervalNanos)) {
+            adjust(queueLatencyNanos.getAsLong());
+        }
+    }
+
+    void adjust(long queueNanos) {
+        if (queueNanos > targetQueueNanos) {
+            limit.updateAndGet(current -> Math.max(minLimit, current - Math.max(1, current / 10)));
+        } else {
+            limit.updateAndGet(current -> Math.min(maxLimit, current + 1));
+        }
+    }
+
+    public int limit() {
+        return limit.get();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,147 @@
+package com.forclearsolution.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Admission control for the /users API, in front of the controllers but behind the request metrics so rejected
+// requests still show up there. A client over its rate gets 429, and when the database pool starts queueing the
+// concurrency cap tightens and the overflow gets 503; both carry Retry-After.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private final ClientRateLimiter rateLimiter;
+
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    private final ObjectMapper objectMapper;
+
+    private final long retryAfterShedSeconds;
+
+    private final Counter admitted;
+
+    private final Counter rateLimited;
+
+    private final Counter shed;
+
+    @Autowired
+    public AdmissionControlFilter(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                  @Value("${rateLimitPerSecond}") double permitsPerSecond,
+                                  @Value("${rateLimitBurst}") int burst,
+                                  @Value("${loadShedMinConcurrency}") int minConcurrency,
+                                  @Value("${loadShedMaxConcurrency}") int maxConcurrency,
+                                  @Value("${loadShedQueueLatencyMillis}") long queueLatencyMillis,
+                                  @Value("${loadShedIntervalMillis}") long intervalMillis) {
+        this(new ClientRateLimiter(permitsPerSecond, burst, 100_000),
+                new AdaptiveConcurrencyLimiter(minConcurrency, maxConcurrency,
+                        TimeUnit.MILLISECONDS.toNanos(queueLatencyMillis), TimeUnit.MILLISECONDS.toNanos(intervalMillis),
+                        new PoolQueueLatency(meterRegistry)::sample),
+                objectMapper, meterRegistry, Math.max(1, TimeUnit.MILLISECONDS.toSeconds(intervalMillis)));
+    }
+
+    AdmissionControlFilter(ClientRateLimiter rateLimiter, AdaptiveConcurrencyLimiter concurrencyLimiter,
+                           ObjectMapper objectMapper, MeterRegistry meterRegistry, long retryAfterShedSeconds) {
+        this.rateLimiter = rateLimiter;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.objectMapper = objectMapper;
+        this.retryAfterShedSeconds = retryAfterShedSeconds;
+        this.admitted = meterRegistry.counter("users.admission", "outcome", "admitted");
+        this.rateLimited = meterRegistry.counter("users.admission", "outcome", "rate_limited");
+        this.shed = meterRegistry.counter("users.admission", "outcome", "shed");
+        Gauge.builder("users.admission.limit", concurrencyLimiter, AdaptiveConcurrencyLimiter::limit).register(meterRegistry);
+        Gauge.builder("users.admission.in_flight", concurrencyLimiter, AdaptiveConcurrencyLimiter::inFlight).register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.equals("/users") && !path.startsWith("/users/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long wait = rateLimiter.tryAcquire(ClientIdentity.of(request));
+        if (wait > 0) {
+            rateLimited.increment();
+            reject(request, response, HttpStatus.TOO_MANY_REQUESTS, (wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1),
+                    "Too many requests from this client, retry after the given delay.");
+            return;
+        }
+        if (!concurrencyLimiter.tryAcquire()) {
+            shed.increment();
+            reject(request, response, HttpStatus.SERVICE_UNAVAILABLE, retryAfterShedSeconds,
+                    "The service is overloaded, retry after the given delay.");
+            return;
+        }
+
+        admitted.increment();
+        // a long poll gives its slot back as soon as it parks, it holds no thread or connection while it waits
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            concurrencyLimiter.release();
+        }
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, HttpStatus status, long retryAfterSeconds,
+                        String detail) throws IOException {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(status, detail);
+        problem.setInstance(URI.create(request.getRequestURI()));
+        problem.setProperty("errors", List.of(detail));
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_PROBLEM_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), problem);
+    }
+
+    // mean wait for a connection across every Hikari pool since the previous sample, 0 when nothing was borrowed
+    static class PoolQueueLatency {
+
+        private final MeterRegistry meterRegistry;
+
+        private long lastCount;
+
+        private double lastTotalNanos;
+
+        PoolQueueLatency(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        synchronized long sample() {
+            long count = 0;
+            double totalNanos = 0;
+            for (Timer timer : meterRegistry.find("hikaricp.connections.acquire").timers()) {
+                count += timer.count();
+                totalNanos += timer.totalTime(TimeUnit.NANOSECONDS);
+            }
+            long borrowed = count - lastCount;
+            double waited = totalNanos - lastTotalNanos;
+            lastCount = count;
+            lastTotalNanos = totalNanos;
+            return borrowed <= 0 ? 0 : (long) (waited / borrowed);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.forclearsolution.config;
+
+import com.forclearsolution.services.impl.UserServiceImpl;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Collection;
+
+@Configuration
+public class CacheConfig {
+
+    // the entity caches share spring.cache.caffeine.spec; a cached page holds up to a full page of rows under a key
+    // the client picks freely, so userPages is bounded by the rows it holds instead of by its number of entries
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> userPagesCacheCustomizer(@Value("${userPagesMaxRows}") long maxRows) {
+        return cacheManager -> cacheManager.registerCustomCache(UserServiceImpl.USER_PAGES_CACHE, Caffeine.newBuilder()
+                .maximumWeight(maxRows)
+                .weigher((Object key, Object value) -> value instanceof Collection<?> rows ? rows.size() + 1 : 1)
+                .expireAfterWrite(Duration.ofMinutes(10))
+                .recordStats()
+                .build());
+    }
+}
@@ -0,0 +1,19 @@
+package com.forclearsolution.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.security.Principal;
+
+// Who a request counts against when it has to be limited or scoped. Only what the client cannot choose is used:
+// the authenticated principal, else the remote address, which behind a load balancer is taken from the forwarded
+// headers of trusted proxies only (server.forward-headers-strategy).
+final class ClientIdentity {
+
+    private ClientIdentity() {
+    }
+
+    static String of(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        return principal != null ? "user:" + principal.getName() : "addr:" + request.getRemoteAddr();
+    }
+}
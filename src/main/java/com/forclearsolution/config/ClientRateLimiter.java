@@ -0,0 +1,46 @@
+package com.forclearsolution.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token bucket per client in its GCRA form: a bucket is a single timestamp, the moment it would be full again,
+// so taking a token is one compare-and-set and no client ever blocks another. The buckets live in a bounded cache
+// whose hash table is striped, idle clients fall out once their bucket has refilled.
+public class ClientRateLimiter {
+
+    private final long intervalNanos;
+
+    private final long burstNanos;
+
+    private final Cache<String, AtomicLong> buckets;
+
+    public ClientRateLimiter(double permitsPerSecond, int burst, int maxClients) {
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burstNanos = intervalNanos * burst;
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofNanos(Math.max(burstNanos, TimeUnit.SECONDS.toNanos(1))))
+                .maximumSize(maxClients)
+                .build();
+    }
+
+    // 0 when the request may proceed, otherwise how long until the client has a token again
+    public long tryAcquire(String client) {
+        AtomicLong fullAt = buckets.get(client, key -> new AtomicLong(System.nanoTime()));
+        while (true) {
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            long next = Math.max(current, now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
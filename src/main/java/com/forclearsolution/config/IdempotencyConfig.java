@@ -0,0 +1,38 @@
+package com.forclearsolution.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+
+// idempotencyStore=memory keeps keys per instance, jdbc shares them through the idempotency_keys table so a retry
+// routed to another instance is still answered from the first response
+@Configuration
+public class IdempotencyConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "idempotencyStore", havingValue = "memory", matchIfMissing = true)
+    public IdempotencyStore inMemoryIdempotencyStore(@Value("${idempotencyKeyTtlMinutes}") long ttlMinutes,
+                                                     @Value("${idempotencyMaxBytes}") long maxBytes) {
+        return new InMemoryIdempotencyStore(Duration.ofMinutes(ttlMinutes), maxBytes);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "idempotencyStore", havingValue = "jdbc")
+    public IdempotencyStore jdbcIdempotencyStore(JdbcTemplate jdbcTemplate,
+                                                 @Value("${idempotencyKeyTtlMinutes}") long ttlMinutes) {
+        return new JdbcIdempotencyStore(jdbcTemplate, Duration.ofMinutes(ttlMinutes));
+    }
+
+    @Bean
+    public IdempotencyFilter idempotencyFilter(IdempotencyStore idempotencyStore, ObjectMapper objectMapper,
+                                               MeterRegistry meterRegistry,
+                                               @Value("${idempotencyWaitMillis}") long waitMillis) {
+        return new IdempotencyFilter(idempotencyStore, objectMapper, meterRegistry, waitMillis);
+    }
+}
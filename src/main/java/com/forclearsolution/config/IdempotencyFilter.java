@@ -0,0 +1,224 @@
+package com.forclearsolution.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+// Idempotency-Key for POST /users and POST /users/batch, scoped to the caller as ClientIdentity tells them apart,
+// never to a header the client picks. The first request with a key runs and its response is kept; a retry with the
+// same body gets that response back without validation or inserts, a retry with another body is refused with 422,
+// and one arriving while the first still runs waits for it, then 409. Request bodies are compared by a digest taken
+// while they stream through, so batch uploads are never buffered; only the response is, to be kept.
+@Order(Ordered.HIGHEST_PRECEDENCE + 20)
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Set<String> PATHS = Set.of("/users", "/users/batch");
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyStore store;
+
+    private final ObjectMapper objectMapper;
+
+    private final long waitMillis;
+
+    private final Counter executed;
+
+    private final Counter replayed;
+
+    public IdempotencyFilter(IdempotencyStore store, ObjectMapper objectMapper, MeterRegistry meterRegistry, long waitMillis) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.waitMillis = waitMillis;
+        this.executed = meterRegistry.counter("users.idempotency", "outcome", "executed");
+        this.replayed = meterRegistry.counter("users.idempotency", "outcome", "replayed");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || request.getHeader(IDEMPOTENCY_KEY_HEADER) == null
+                || !PATHS.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            reject(request, response, HttpStatus.BAD_REQUEST, "Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters.");
+            return;
+        }
+        String scopedKey = ClientIdentity.of(request) + "\n" + request.getRequestURI() + "\n" + key;
+
+        IdempotencyStore.Claim claim;
+        try {
+            claim = store.claim(scopedKey, waitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServletException("Interrupted while waiting for idempotency key.", e);
+        }
+
+        if (claim.owner()) {
+            execute(scopedKey, request, response, filterChain);
+            return;
+        }
+        if (claim.response() == null) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            reject(request, response, HttpStatus.CONFLICT, "A request with this Idempotency-Key is still being processed.");
+            return;
+        }
+
+        DigestingRequest digesting = new DigestingRequest(request);
+        if (!digesting.fingerprint().equals(claim.response().fingerprint())) {
+            reject(request, response, HttpStatus.UNPROCESSABLE_ENTITY, "This Idempotency-Key was already used for a different request.");
+            return;
+        }
+        replayed.increment();
+        response.setStatus(claim.response().status());
+        if (claim.response().contentType() != null) {
+            response.setContentType(claim.response().contentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.getOutputStream().write(claim.response().body());
+    }
+
+    // server errors are not kept, the client's retry runs the request again
+    private void execute(String key, HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        DigestingRequest digesting = new DigestingRequest(request);
+        ContentCachingResponseWrapper caching = new ContentCachingResponseWrapper(response);
+        boolean completed = false;
+        try {
+            filterChain.doFilter(digesting, caching);
+            executed.increment();
+            if (caching.getStatus() < 500) {
+                store.complete(key, new IdempotencyStore.Response(caching.getStatus(), caching.getContentType(),
+                        caching.getContentAsByteArray(), digesting.fingerprint()));
+                completed = true;
+            }
+        } finally {
+            if (!completed) {
+                store.release(key);
+            }
+            caching.copyBodyToResponse();
+        }
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, HttpStatus status, String detail)
+            throws IOException {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(status, detail);
+        problem.setInstance(URI.create(request.getRequestURI()));
+        problem.setProperty("errors", List.of(detail));
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_PROBLEM_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), problem);
+    }
+
+    // hashes the body as the controller reads it; fingerprint() reads whatever the controller left unread
+    private static class DigestingRequest extends HttpServletRequestWrapper {
+
+        private final MessageDigest digest;
+
+        private ServletInputStream inputStream;
+
+        DigestingRequest(HttpServletRequest request) {
+            super(request);
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                inputStream = new DigestingInputStream(super.getInputStream(), digest);
+            }
+            return inputStream;
+        }
+
+        String fingerprint() throws IOException {
+            InputStream body = getInputStream();
+            byte[] buffer = new byte[8192];
+            while (body.read(buffer) != -1) {
+                // drained into the digest
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+
+    private static class DigestingInputStream extends ServletInputStream {
+
+        private final ServletInputStream delegate;
+
+        private final MessageDigest digest;
+
+        DigestingInputStream(ServletInputStream delegate, MessageDigest digest) {
+            this.delegate = delegate;
+            this.digest = digest;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b != -1) {
+                digest.update((byte) b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = delegate.read(buffer, offset, length);
+            if (read > 0) {
+                digest.update(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+    }
+}
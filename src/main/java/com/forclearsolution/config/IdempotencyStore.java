@@ -0,0 +1,20 @@
+package com.forclearsolution.config;
+
+// Remembers the response to each Idempotency-Key, so a retried request is answered without running it again.
+public interface IdempotencyStore {
+
+    record Response(int status, String contentType, byte[] body, String fingerprint) {
+    }
+
+    // the owner runs the request and then completes or releases the key; anyone else gets the stored response,
+    // or neither when the first request is still running once the wait is over
+    record Claim(boolean owner, Response response) {
+    }
+
+    Claim claim(String key, long waitMillis) throws InterruptedException;
+
+    void complete(String key, Response response);
+
+    // the request failed without an answer worth repeating, a retry may run it again
+    void release(String key);
+}
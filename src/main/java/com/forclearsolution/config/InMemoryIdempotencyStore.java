@@ -0,0 +1,66 @@
+package com.forclearsolution.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Keys of this instance only. A retry racing the first request parks on its future instead of polling.
+// Bounded by the bytes of the keys and kept responses, since one batch response can outweigh thousands of others.
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final ConcurrentMap<String, CompletableFuture<Response>> responses;
+
+    public InMemoryIdempotencyStore(Duration ttl, long maxBytes) {
+        Cache<String, CompletableFuture<Response>> cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumWeight(maxBytes)
+                .weigher(InMemoryIdempotencyStore::weigh)
+                .build();
+        this.responses = cache.asMap();
+    }
+
+    @Override
+    public Claim claim(String key, long waitMillis) throws InterruptedException {
+        CompletableFuture<Response> existing = responses.putIfAbsent(key, new CompletableFuture<>());
+        if (existing == null) {
+            return new Claim(true, null);
+        }
+        try {
+            return new Claim(false, existing.get(waitMillis, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            return new Claim(false, null);
+        } catch (ExecutionException e) {
+            // the first request was released, whoever gets here first runs it again
+            return new Claim(responses.putIfAbsent(key, new CompletableFuture<>()) == null, null);
+        }
+    }
+
+    @Override
+    public void complete(String key, Response response) {
+        CompletableFuture<Response> pending = responses.get(key);
+        if (pending != null) {
+            pending.complete(response);
+            // weights are taken on write, putting the completed future back has the body counted
+            responses.replace(key, pending, CompletableFuture.completedFuture(response));
+        }
+    }
+
+    @Override
+    public void release(String key) {
+        CompletableFuture<Response> pending = responses.remove(key);
+        if (pending != null) {
+            pending.completeExceptionally(new IllegalStateException("Idempotency key " + key + " was released."));
+        }
+    }
+
+    private static int weigh(String key, CompletableFuture<Response> response) {
+        int body = response.isDone() && !response.isCompletedExceptionally() ? response.join().body().length : 0;
+        return 2 * key.length() + body;
+    }
+}
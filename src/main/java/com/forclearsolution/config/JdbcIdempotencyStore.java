@@ -0,0 +1,115 @@
+package com.forclearsolution.config;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keys shared by every instance through the idempotency_keys table. The primary key on the key hash decides
+// which request runs; a retry landing on another instance polls the row until the first one has answered.
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private static final long POLL_MILLIS = 50;
+
+    // a request still unanswered after this long died with its instance, its key may be taken over
+    private static final Duration ABANDONED_AFTER = Duration.ofMinutes(5);
+
+    private static final long PURGE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final String CLAIM_SQL = "insert into idempotency_keys (key_hash, created_at) values (?, ?)";
+
+    private static final String SELECT_SQL =
+            "select status, content_type, body, fingerprint from idempotency_keys where key_hash = ?";
+
+    private static final String COMPLETE_SQL =
+            "update idempotency_keys set status = ?, content_type = ?, body = ?, fingerprint = ? where key_hash = ?";
+
+    private static final String RELEASE_SQL = "delete from idempotency_keys where key_hash = ? and status is null";
+
+    private static final String EXPIRE_SQL = "delete from idempotency_keys where key_hash = ?"
+            + " and (created_at < ? or (status is null and created_at < ?))";
+
+    private static final String PURGE_SQL = "delete from idempotency_keys where created_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Duration ttl;
+
+    private final AtomicLong nextPurge = new AtomicLong(System.nanoTime());
+
+    public JdbcIdempotencyStore(JdbcTemplate jdbcTemplate, Duration ttl) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttl = ttl;
+    }
+
+    @Override
+    public Claim claim(String key, long waitMillis) throws InterruptedException {
+        String hash = hash(key);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        purgeExpired();
+        while (true) {
+            Instant now = Instant.now();
+            jdbcTemplate.update(EXPIRE_SQL, hash, Timestamp.from(now.minus(ttl)), Timestamp.from(now.minus(ABANDONED_AFTER)));
+            try {
+                jdbcTemplate.update(CLAIM_SQL, hash, Timestamp.from(now));
+                return new Claim(true, null);
+            } catch (DuplicateKeyException e) {
+                // taken, see whether it has been answered
+            }
+
+            List<Response> rows = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> {
+                int status = rs.getInt("status");
+                return rs.wasNull() ? null
+                        : new Response(status, rs.getString("content_type"), rs.getBytes("body"), rs.getString("fingerprint"));
+            }, hash);
+            if (rows.isEmpty()) {
+                // released or expired in between, try to take it again
+                continue;
+            }
+            if (rows.get(0) != null) {
+                return new Claim(false, rows.get(0));
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return new Claim(false, null);
+            }
+            Thread.sleep(POLL_MILLIS);
+        }
+    }
+
+    @Override
+    public void complete(String key, Response response) {
+        jdbcTemplate.update(COMPLETE_SQL, response.status(), response.contentType(), response.body(),
+                response.fingerprint(), hash(key));
+    }
+
+    @Override
+    public void release(String key) {
+        jdbcTemplate.update(RELEASE_SQL, hash(key));
+    }
+
+    // keeps the table bounded by the ttl, at most once a minute per instance
+    private void purgeExpired() {
+        long due = nextPurge.get();
+        if (System.nanoTime() - due >= 0 && nextPurge.compareAndSet(due, System.nanoTime() + PURGE_INTERVAL_NANOS)) {
+            jdbcTemplate.update(PURGE_SQL, Timestamp.from(Instant.now().minus(ttl)));
+        }
+    }
+
+    // client ids and keys are caller supplied and unbounded, the table stores a fixed size digest of them
+    static String hash(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
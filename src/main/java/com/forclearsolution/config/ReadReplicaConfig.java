@@ -0,0 +1,63 @@
+package com.forclearsolution.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Active when readReplicaUrls lists at least one replica. Transactions marked readOnly run on a replica and
+// everything else on the primary. That includes the default transactions of the CRUD methods Spring Data
+// inherits, but declared query methods have none and only reach a replica inside a read-only transaction.
+@Configuration
+@ConditionalOnExpression("'${readReplicaUrls:}'.trim() != ''")
+public class ReadReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaDataSource replicaDataSource(HikariDataSource primaryDataSource,
+                                               @Value("${readReplicaUrls}") List<String> replicaUrls,
+                                               @Value("${readReplicaHealthCheckSeconds}") long healthCheckSeconds) {
+        List<HikariDataSource> replicas = new ArrayList<>(replicaUrls.size());
+        for (String url : replicaUrls) {
+            HikariDataSource replica = new HikariDataSource();
+            primaryDataSource.copyStateTo(replica);
+            replica.setPoolName("HikariPool-replica-" + replicas.size());
+            replica.setJdbcUrl(url.trim());
+            replica.setReadOnly(true);
+            // a replica that is down must neither fail startup nor hold a read for the full pool timeout
+            replica.setInitializationFailTimeout(-1);
+            replica.setConnectionTimeout(Math.min(primaryDataSource.getConnectionTimeout(), 2000));
+            replicas.add(replica);
+        }
+        return new ReplicaDataSource(primaryDataSource, replicas, healthCheckSeconds);
+    }
+
+    // the connection is fetched on the first statement, by which point the transaction has marked it read-only
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaDataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        return dataSource;
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(@Value("${readYourWritesWindowMillis}") long windowMillis) {
+        return new ReadYourWritesFilter(Duration.ofMillis(windowMillis));
+    }
+}
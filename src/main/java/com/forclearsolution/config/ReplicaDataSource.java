@@ -0,0 +1,137 @@
+package com.forclearsolution.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Hands out read-only connections round-robin across the replicas that passed their last health check.
+// A replica that fails to connect is skipped until the next check succeeds, and with no healthy replica,
+// or while the current thread is pinned, reads go to the primary.
+public class ReplicaDataSource extends AbstractDataSource implements Closeable {
+
+    private static final ThreadLocal<boolean[]> PINNED = ThreadLocal.withInitial(() -> new boolean[1]);
+
+    private final DataSource primary;
+
+    private final List<Replica> replicas;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final ScheduledExecutorService healthChecker;
+
+    public ReplicaDataSource(DataSource primary, List<HikariDataSource> replicas, long healthCheckSeconds) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkHealth();
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, healthCheckSeconds, healthCheckSeconds, TimeUnit.SECONDS);
+    }
+
+    public static void pinToPrimary() {
+        PINNED.get()[0] = true;
+    }
+
+    public static void clear() {
+        PINNED.remove();
+    }
+
+    // for reads whose result outlives the request and is not checked against replica lag, such as the search index;
+    // inside a read-only transaction this only takes effect while the transaction has not fetched its connection yet
+    public static <T> T onPrimary(Supplier<T> read) {
+        boolean[] pinned = PINNED.get();
+        if (pinned[0]) {
+            return read.get();
+        }
+        pinned[0] = true;
+        try {
+            return read.get();
+        } finally {
+            pinned[0] = false;
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connect(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connect(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection connect(Connector connector) throws SQLException {
+        if (PINNED.get()[0]) {
+            return connector.connect(primary);
+        }
+
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                return connector.connect(replica.dataSource);
+            } catch (SQLFeatureNotSupportedException e) {
+                // a pool that does not take per-call credentials is not down
+                throw e;
+            } catch (SQLException e) {
+                replica.healthy = false;
+            }
+        }
+        return connector.connect(primary);
+    }
+
+    public int healthyReplicas() {
+        return (int) replicas.stream().filter(replica -> replica.healthy).count();
+    }
+
+    void checkHealth() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                replica.healthy = connection.isValid(1);
+            } catch (SQLException e) {
+                replica.healthy = false;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        healthChecker.shutdownNow();
+        for (Replica replica : replicas) {
+            replica.dataSource.close();
+        }
+    }
+
+    private interface Connector {
+        Connection connect(DataSource dataSource) throws SQLException;
+    }
+
+    private static final class Replica {
+
+        private final HikariDataSource dataSource;
+
+        private volatile boolean healthy;
+
+        private Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.forclearsolution.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class RepositoryConcurrencyLimiter {
+
+    private static final ThreadLocal<int[]> DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final Semaphore permits;
+
+    private final long timeoutMillis;
+
+    public RepositoryConcurrencyLimiter(@Value("${repository.concurrency.limit:${spring.datasource.hikari.maximum-pool-size:10}}") int limit,
+                                        @Value("${spring.datasource.hikari.connection-timeout:30000}") long timeoutMillis) {
+        this.permits = new Semaphore(limit, true);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    // runs outside the transaction interceptor, so a permit is held before a connection is taken from the pool.
+    // JdbcTemplate calls are covered too, the outbox poller, audit writer and idempotency store share the same pool,
+    // only the replica health check is left out because it probes a pool of its own
+    @Around("this(org.springframework.data.repository.Repository)"
+            + " || target(org.springframework.jdbc.core.JdbcOperations)"
+            + " || @annotation(org.springframework.transaction.annotation.Transactional)")
+    public Object limit(ProceedingJoinPoint joinPoint) throws Throwable {
+        int[] depth = DEPTH.get();
+        if (depth[0] > 0) {
+            depth[0]++;
+            try {
+                return joinPoint.proceed();
+            } finally {
+                depth[0]--;
+            }
+        }
+
+        if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new DataAccessResourceFailureException("Timed out waiting for a database permit.");
+        }
+        depth[0] = 1;
+        try {
+            return joinPoint.proceed();
+        } finally {
+            depth[0] = 0;
+            DEPTH.remove();
+            permits.release();
+        }
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+}
@@ -0,0 +1,20 @@
+package com.forclearsolution.config;
+
+import com.forclearsolution.services.impl.EmailFingerprintIndex;
+import com.forclearsolution.services.impl.UserSearchIndex;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StartupConfig {
+
+    // beans are lazy by default; the indexes warm up in the background from the moment the context is ready
+    // and pull in the EntityManagerFactory and the Flyway migration, which the first request should not pay for
+    @Bean
+    public static LazyInitializationExcludeFilter eagerStartupBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(EntityManagerFactory.class, EmailFingerprintIndex.class,
+                UserSearchIndex.class);
+    }
+}
@@ -1,24 +1,58 @@
 package com.forclearsolution.controllers;
 
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
 import java.time.format.DateTimeParseException;
+import java.util.List;
 
+// every body is an RFC 7807 problem, written as application/problem+json
 @ControllerAdvice
 public class GlobalExceptionHandler {
+
+    private static final String DATE_FORMAT_MESSAGE = "Invalid date of birth format. Please use YYYY-MM-DD format.";
+
     @ExceptionHandler(HttpMessageNotReadableException.class)
     public ResponseEntity<Object> handleHttpMessageNotReadable(HttpMessageNotReadableException ex) {
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                .body("Invalid date of birth format. Please use YYYY-MM-DD format.");
+        return problem(HttpStatus.BAD_REQUEST, DATE_FORMAT_MESSAGE);
     }
 
     @ExceptionHandler(DateTimeParseException.class)
     public ResponseEntity<Object> DateTimeParseException(DateTimeParseException ex) {
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                .body("Invalid date of birth format. Please use YYYY-MM-DD format.");
+        return problem(HttpStatus.BAD_REQUEST, DATE_FORMAT_MESSAGE);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Object> handleIllegalArgument(IllegalArgumentException ex) {
+        return problem(HttpStatus.BAD_REQUEST,
+                ex.getMessage() != null ? ex.getMessage() : "Please check your details.");
+    }
+
+    @ExceptionHandler(EntityNotFoundException.class)
+    public ResponseEntity<Object> handleEntityNotFound(EntityNotFoundException ex) {
+        return problem(HttpStatus.NOT_FOUND, ex.getMessage());
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Object> handleOptimisticLockingFailure(OptimisticLockingFailureException ex) {
+        return problem(HttpStatus.CONFLICT, "The user was modified by another request, fetch it again and retry.");
+    }
+
+    static ResponseEntity<Object> problem(HttpStatus status, String detail) {
+        return problem(status, List.of(detail));
+    }
+
+    // shared by the controllers, so an error has the same shape whether it is returned or thrown; Spring writes it
+    // as application/problem+json and fills in the request path as the instance
+    static ResponseEntity<Object> problem(HttpStatus status, List<String> errors) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(status, errors.get(0));
+        problem.setProperty("errors", errors);
+        return ResponseEntity.status(status).body(problem);
     }
 }
@@ -0,0 +1,45 @@
+package com.forclearsolution.controllers;
+
+import com.forclearsolution.models.User;
+import com.forclearsolution.services.ReactiveUserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+import static com.forclearsolution.controllers.GlobalExceptionHandler.problem;
+
+@RestController
+@RequestMapping("/reactive/users")
+public class ReactiveUserController {
+
+    private final ReactiveUserService reactiveUserService;
+
+    @Autowired
+    public ReactiveUserController(ReactiveUserService reactiveUserService) {
+        this.reactiveUserService = reactiveUserService;
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<User> allUsers() {
+        return reactiveUserService.listUsers();
+    }
+
+    @GetMapping("{id}")
+    public Mono<ResponseEntity<Object>> getUserById(@PathVariable Long id) {
+        return reactiveUserService.findUserById(id)
+                .map(user -> ResponseEntity.ok((Object) user))
+                .switchIfEmpty(Mono.fromSupplier(() -> problem(HttpStatus.NOT_FOUND, "User not found with id: " + id)));
+    }
+
+    @GetMapping(value = "/birthdate-range", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<User> getUsersInDateRange(@RequestParam("startDate") String startDate,
+                                          @RequestParam("endDate") String endDate) {
+        return reactiveUserService.getUsersInDateRange(LocalDate.parse(startDate), LocalDate.parse(endDate));
+    }
+}
@@ -1,94 +1,353 @@
 package com.forclearsolution.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forclearsolution.models.BatchRowResult;
+import com.forclearsolution.models.BirthDateCursor;
 import com.forclearsolution.models.User;
+import com.forclearsolution.models.UserField;
+import com.forclearsolution.models.UserPage;
+import com.forclearsolution.models.UserResult;
 import com.forclearsolution.services.UserService;
-import jakarta.persistence.EntityNotFoundException;
+import com.forclearsolution.services.impl.UserChangeTracker;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.forclearsolution.controllers.GlobalExceptionHandler.problem;
 
 @RestController
 @RequestMapping("/users")
 public class UserController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int BATCH_CHUNK_SIZE = 500;
+
+    // below the servlet container's default async timeout of 30 seconds
+    private static final int MAX_WAIT_SECONDS = 25;
+
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private static final String INVALID_IF_MATCH_MESSAGE = "If-Match must be a single ETag returned by this API.";
+
+    private static final String LIMIT_MESSAGE = "limit must be between 1 and " + MAX_PAGE_SIZE + ".";
+
+    private static final String CONCURRENT_MODIFICATION_MESSAGE = "The user was modified by another request, fetch it again and retry.";
+
     private final UserService userService;
 
+    private final ObjectMapper objectMapper;
+
+    private final UserChangeTracker changeTracker;
+
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, ObjectMapper objectMapper, UserChangeTracker changeTracker) {
         this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.changeTracker = changeTracker;
     }
 
     @PostMapping()
-    public ResponseEntity<String> register(@RequestBody User user) {
+    public ResponseEntity<Object> register(@RequestBody User user) {
+
+        UserResult result = userService.tryCreateUser(user);
+        if (result.getStatus() == UserResult.Status.DUPLICATE || result.getStatus() == UserResult.Status.STALE) {
+            return problem(HttpStatus.CONFLICT, result.getErrors());
+        }
+        if (!result.isOk()) {
+            return problem(HttpStatus.BAD_REQUEST, result.getErrors());
+        }
+        return ResponseEntity.ok("User added successfully.");
+    }
+
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<List<BatchRowResult>> registerBatch(InputStream body) throws IOException {
+
+        List<BatchRowResult> results = new ArrayList<>();
+        List<User> chunk = new ArrayList<>(BATCH_CHUNK_SIZE);
+        int index = 0;
+
+        // a top-level JSON array and newline-delimited objects are both read one row at a time
+        try (MappingIterator<User> rows = objectMapper.readerFor(User.class).readValues(body)) {
+            while (rows.hasNextValue()) {
+                User user;
+                try {
+                    user = rows.nextValue();
+                } catch (JsonMappingException e) {
+                    registerChunk(chunk, index, results);
+                    results.add(new BatchRowResult(index++, null, BatchRowResult.Status.INVALID, null, "Malformed row."));
+                    continue;
+                }
+                chunk.add(user);
+                index++;
+                if (chunk.size() == BATCH_CHUNK_SIZE) {
+                    registerChunk(chunk, index, results);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // past a syntax error nothing can be read; earlier chunks are already committed, so the report still
+            // tells the client which rows went in and where to resume
+            registerChunk(chunk, index, results);
+            results.add(new BatchRowResult(index, null, BatchRowResult.Status.INVALID, null,
+                    "Malformed JSON, this row and the ones after it were not read."));
+            return ResponseEntity.ok(results);
+        }
+        registerChunk(chunk, index, results);
+
+        return ResponseEntity.ok(results);
+    }
+
+    private void registerChunk(List<User> chunk, int nextIndex, List<BatchRowResult> results) {
+        if (!chunk.isEmpty()) {
+            results.addAll(userService.createUsers(chunk, nextIndex - chunk.size()));
+            chunk.clear();
+        }
+    }
+
+    @GetMapping()
+    public ResponseEntity<Object> allUsers(@RequestParam(value = "after", required = false) Long after,
+                                           @RequestParam(value = "limit", defaultValue = "50") int limit,
+                                           @RequestParam(value = "fields", required = false) String fields) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return problem(HttpStatus.BAD_REQUEST, LIMIT_MESSAGE);
+        }
+
+        Set<UserField> selectedFields;
+        try {
+            selectedFields = UserField.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return problem(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        UserChangeTracker.Generation generation = changeTracker.current();
+        List<Map<String, Object>> users = userService.listUserViews(after, limit, selectedFields);
+        Long nextCursor = users.size() == limit ? (Long) users.get(users.size() - 1).get("id") : null;
+
+        return revalidated(generation).body(new UserPage<>(users, nextCursor));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<Object> searchUsers(@RequestParam("q") String query,
+                                              @RequestParam(value = "after", required = false) Long after,
+                                              @RequestParam(value = "limit", defaultValue = "20") int limit,
+                                              @RequestParam(value = "fields", required = false) String fields) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return problem(HttpStatus.BAD_REQUEST, LIMIT_MESSAGE);
+        }
 
         try {
-            userService.createUser(user);
-            return ResponseEntity.ok("User added successfully.");
+            return ResponseEntity.ok(userService.searchUsers(query, after, limit, UserField.parse(fields)));
         } catch (IllegalArgumentException e) {
-            String errorMessage = e.getMessage() != null ? e.getMessage() : "Please check your details.";
-            return ResponseEntity.badRequest().body(errorMessage);
+            return problem(HttpStatus.BAD_REQUEST, e.getMessage());
         }
     }
 
-    @GetMapping()
-    public List<User> allUsers() {
-        return userService.listUsers();
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamUsers() {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                userService.streamUsers(user -> {
+                    try {
+                        generator.writeObject(user);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
     @GetMapping("{id}")
-    public ResponseEntity<Object> getUserById(@PathVariable Long id) {
-        try {
-            User user = userService.getUserById(id);
-            return ResponseEntity.ok(user);
-        } catch (EntityNotFoundException e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found with id: " + id);
+    public ResponseEntity<Object> getUserById(@PathVariable Long id,
+                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Optional<User> user = userService.findUserById(id);
+        if (user.isEmpty()) {
+            return problem(HttpStatus.NOT_FOUND, List.of("User not found with id: " + id));
+        }
+        String etag = etag(user.get());
+        if (ifNoneMatch != null && matchesAny(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(user.get());
+    }
+
+    // incremental feed for consumers that used to poll the whole list, waitSeconds turns it into a long poll
+    @GetMapping("changes")
+    public CompletableFuture<ResponseEntity<Object>> getChanges(@RequestParam(value = "since", defaultValue = "0") long since,
+                                                                @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                                @RequestParam(value = "waitSeconds", defaultValue = "0") int waitSeconds) {
+        if (since < 0) {
+            return CompletableFuture.completedFuture(problem(HttpStatus.BAD_REQUEST, "since cannot be negative."));
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return CompletableFuture.completedFuture(problem(HttpStatus.BAD_REQUEST, LIMIT_MESSAGE));
+        }
+        if (waitSeconds < 0 || waitSeconds > MAX_WAIT_SECONDS) {
+            return CompletableFuture.completedFuture(
+                    problem(HttpStatus.BAD_REQUEST, "waitSeconds must be between 0 and " + MAX_WAIT_SECONDS + "."));
         }
+        return userService.getChanges(since, limit, TimeUnit.SECONDS.toMillis(waitSeconds))
+                .thenApply(page -> ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(page));
+    }
+
+    @GetMapping("{id}/history")
+    public ResponseEntity<Object> getUserHistory(@PathVariable Long id,
+                                                 @RequestParam(value = "after", required = false) Long after,
+                                                 @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return problem(HttpStatus.BAD_REQUEST, LIMIT_MESSAGE);
+        }
+        return ResponseEntity.ok(userService.getUserHistory(id, after, limit));
     }
 
     @DeleteMapping("{id}")
-    public ResponseEntity<String> deleteUser(@PathVariable Long id) {
-        try {
-            User user = userService.getUserById(id);
-            if (user != null) {
-                userService.deleteUser(id);
+    public ResponseEntity<Object> deleteUser(@PathVariable Long id,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = expectedVersion(ifMatch);
+        if (expectedVersion != null && expectedVersion < 0) {
+            return problem(HttpStatus.PRECONDITION_FAILED, List.of(INVALID_IF_MATCH_MESSAGE));
+        }
+
+        UserResult result = userService.tryDeleteUser(id, expectedVersion);
+        switch (result.getStatus()) {
+            case OK:
                 return ResponseEntity.ok("User deleted successfully.");
-            } else {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found with id: " + id);
-            }
-        } catch (EntityNotFoundException e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("The user was not deleted because the user was not found by id: " + id);
+            case NOT_FOUND:
+                return problem(HttpStatus.NOT_FOUND, List.of("The user was not deleted because the user was not found by id: " + id));
+            default:
+                return problem(HttpStatus.PRECONDITION_FAILED, List.of(CONCURRENT_MODIFICATION_MESSAGE));
         }
     }
 
     @PatchMapping("{id}")
-    public ResponseEntity<Object> updateUser(@PathVariable Long id, @RequestBody User user) {
+    public ResponseEntity<Object> updateUser(@PathVariable Long id,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                             @RequestBody User user) {
+        Long expectedVersion = expectedVersion(ifMatch);
+        if (expectedVersion != null && expectedVersion < 0) {
+            return problem(HttpStatus.PRECONDITION_FAILED, List.of(INVALID_IF_MATCH_MESSAGE));
+        }
+        // without If-Match the client never claimed a version, so losing the race is a conflict rather than a failed precondition
+        HttpStatus staleStatus = ifMatch == null ? HttpStatus.CONFLICT : HttpStatus.PRECONDITION_FAILED;
 
-        try {
-            User updatedUser = userService.updateUser(user, id);
-            return ResponseEntity.ok(updatedUser);
-        } catch (IllegalArgumentException e) {
-            String errorMessage = e.getMessage() != null ? e.getMessage() : "Please check your details.";
-            return ResponseEntity.badRequest().body(errorMessage);
+        UserResult result = userService.tryUpdateUser(user, id, expectedVersion);
+
+        switch (result.getStatus()) {
+            case OK:
+                return ResponseEntity.ok().eTag(etag(result.getUser())).body(result.getUser());
+            case NOT_FOUND:
+                return problem(HttpStatus.NOT_FOUND, result.getErrors());
+            case STALE:
+                return problem(staleStatus, List.of(CONCURRENT_MODIFICATION_MESSAGE));
+            case DUPLICATE:
+                return problem(HttpStatus.CONFLICT, result.getErrors());
+            default:
+                return problem(HttpStatus.BAD_REQUEST, result.getErrors());
         }
     }
 
+    private static String etag(User user) {
+        return "\"" + user.getVersion() + "\"";
+    }
+
+    // If-None-Match uses the weak comparison, so W/ prefixes are ignored
+    private static boolean matchesAny(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // null means the update is unconditional and -1 that the header is not a single strong ETag of this API;
+    // versions are never negative, and parsing by hand keeps malformed headers from costing an exception
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 3 || tag.length() > 20 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            return -1L;
+        }
+        long version = 0;
+        for (int i = 1; i < tag.length() - 1; i++) {
+            char c = tag.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1L;
+            }
+            version = version * 10 + (c - '0');
+        }
+        return version;
+    }
+
     @GetMapping("/birthdate-range")
-    public ResponseEntity<List<User>> getUsersInDateRange(@RequestParam("startDate") String startDate,
-                                                          @RequestParam("endDate") String endDate) {
+    public ResponseEntity<Object> getUsersInDateRange(@RequestParam("startDate") String startDate,
+                                                      @RequestParam("endDate") String endDate,
+                                                      @RequestParam(value = "afterDateOfBirth", required = false) String afterDateOfBirth,
+                                                      @RequestParam(value = "afterId", required = false) Long afterId,
+                                                      @RequestParam(value = "limit", defaultValue = "50") int limit,
+                                                      @RequestParam(value = "countOnly", defaultValue = "false") boolean countOnly,
+                                                      @RequestParam(value = "fields", required = false) String fields) {
 
         try {
             LocalDate start = LocalDate.parse(startDate);
             LocalDate end = LocalDate.parse(endDate);
+            UserChangeTracker.Generation generation = changeTracker.current();
 
-            List<User> users = userService.getUsersInDateRange(start, end);
+            if (countOnly) {
+                return revalidated(generation).body(Map.of("count", userService.countUsersInDateRange(start, end)));
+            }
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                return problem(HttpStatus.BAD_REQUEST, LIMIT_MESSAGE);
+            }
+            if ((afterDateOfBirth == null) != (afterId == null)) {
+                return problem(HttpStatus.BAD_REQUEST, "afterDateOfBirth and afterId must be given together.");
+            }
+
+            BirthDateCursor after = afterId == null ? null : new BirthDateCursor(LocalDate.parse(afterDateOfBirth), afterId);
+            List<Map<String, Object>> users = userService.getUserViewsInDateRange(start, end, after, limit, UserField.parse(fields));
+            Map<String, Object> last = users.size() == limit ? users.get(users.size() - 1) : null;
+            BirthDateCursor nextCursor = last == null ? null
+                    : new BirthDateCursor((LocalDate) last.get("dateOfBirth"), (Long) last.get("id"));
 
-            return ResponseEntity.ok(users);
+            return revalidated(generation).body(new UserPage<>(users, nextCursor));
         } catch (IllegalArgumentException e) {
-            return ResponseEntity.badRequest().build();
+            return problem(HttpStatus.BAD_REQUEST, e.getMessage());
         }
     }
+
+    // the validators are taken before the query, so they are never newer than the rows; Spring answers
+    // a matching If-None-Match or If-Modified-Since with 304 on its own
+    private static ResponseEntity.BodyBuilder revalidated(UserChangeTracker.Generation generation) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .eTag(generation.etag())
+                .lastModified(generation.lastModified());
+    }
 }
@@ -0,0 +1,85 @@
+package com.forclearsolution.controllers;
+
+import com.forclearsolution.models.ExportFormat;
+import com.forclearsolution.models.ExportJob;
+import com.forclearsolution.services.UserExportService;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.Locale;
+
+import static com.forclearsolution.controllers.GlobalExceptionHandler.problem;
+
+@RestController
+@RequestMapping("/users/exports")
+public class UserExportController {
+
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+    private final UserExportService userExportService;
+
+    @Autowired
+    public UserExportController(UserExportService userExportService) {
+        this.userExportService = userExportService;
+    }
+
+    @PostMapping()
+    public ResponseEntity<Object> startExport(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                              @RequestParam(value = "resume", required = false) String resumeJobId) {
+        try {
+            ExportJob job = resumeJobId == null
+                    ? userExportService.startExport(parseFormat(format))
+                    : userExportService.resumeExport(resumeJobId);
+            return ResponseEntity.accepted().location(URI.create("/users/exports/" + job.getJobId())).body(job);
+        } catch (IllegalArgumentException e) {
+            return problem(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (EntityNotFoundException e) {
+            return problem(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    @GetMapping("{jobId}")
+    public ResponseEntity<Object> getExport(@PathVariable String jobId) {
+        try {
+            return ResponseEntity.ok(userExportService.getExport(jobId));
+        } catch (EntityNotFoundException e) {
+            return problem(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    @GetMapping("{jobId}/file")
+    public ResponseEntity<Object> downloadExport(@PathVariable String jobId) {
+        ExportJob job;
+        try {
+            job = userExportService.getExport(jobId);
+        } catch (EntityNotFoundException e) {
+            return problem(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+        if (job.getStatus() != ExportJob.Status.COMPLETED) {
+            return problem(HttpStatus.CONFLICT, "Export " + jobId + " is " + job.getStatus() + ", only a completed export can be downloaded.");
+        }
+
+        // the file is already gzip, so it goes out as is
+        return ResponseEntity.ok()
+                .contentType(GZIP)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(jobId + "." + job.getFormat().getFileExtension()).build().toString())
+                .body(new FileSystemResource(job.getFile()));
+    }
+
+    private static ExportFormat parseFormat(String format) {
+        try {
+            return ExportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown export format: " + format);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.forclearsolution.controllers;
+
+import com.forclearsolution.models.ImportJob;
+import com.forclearsolution.services.UserImportService;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+
+import static com.forclearsolution.controllers.GlobalExceptionHandler.problem;
+
+@RestController
+@RequestMapping("/users/imports")
+public class UserImportController {
+
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv");
+
+    private final UserImportService userImportService;
+
+    @Autowired
+    public UserImportController(UserImportService userImportService) {
+        this.userImportService = userImportService;
+    }
+
+    @PostMapping()
+    public ResponseEntity<Object> startImport(@RequestParam("file") String file) {
+        try {
+            ImportJob job = userImportService.startImport(file);
+            return ResponseEntity.accepted().location(URI.create("/users/imports/" + job.getJobId())).body(job);
+        } catch (IllegalArgumentException e) {
+            return problem(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("{jobId}")
+    public ResponseEntity<Object> getImport(@PathVariable String jobId) {
+        try {
+            return ResponseEntity.ok(userImportService.getImport(jobId));
+        } catch (EntityNotFoundException e) {
+            return problem(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    @GetMapping("{jobId}/rejected")
+    public ResponseEntity<Object> downloadRejected(@PathVariable String jobId) {
+        ImportJob job;
+        try {
+            job = userImportService.getImport(jobId);
+        } catch (EntityNotFoundException e) {
+            return problem(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+        if (job.getStatus() != ImportJob.Status.COMPLETED) {
+            return problem(HttpStatus.CONFLICT, "Import " + jobId + " is " + job.getStatus() + ", only the rejected rows of a completed import can be downloaded.");
+        }
+
+        return ResponseEntity.ok()
+                .contentType(CSV)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(jobId + ".rejected.csv").build().toString())
+                .body(new FileSystemResource(job.getRejectedFile()));
+    }
+}
@@ -1,8 +1,14 @@
 package com.forclearsolution.exceptions;
 
-public class DateOfBirthException extends RuntimeException{
+// thrown for client input, so the stack trace would only describe our own validation code
+public class DateOfBirthException extends IllegalArgumentException {
 
     public DateOfBirthException(String message) {
         super(message);
     }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
 }
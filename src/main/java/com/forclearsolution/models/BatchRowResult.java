@@ -0,0 +1,25 @@
+package com.forclearsolution.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public class BatchRowResult {
+
+    public enum Status {
+        CREATED,
+        DUPLICATE,
+        INVALID
+    }
+
+    private int index;
+
+    private String email;
+
+    private Status status;
+
+    private Long id;
+
+    private String message;
+}
@@ -0,0 +1,17 @@
+package com.forclearsolution.models;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+@AllArgsConstructor
+@Getter
+@EqualsAndHashCode
+public class BirthDateCursor {
+
+    private LocalDate dateOfBirth;
+
+    private Long id;
+}
@@ -0,0 +1,18 @@
+package com.forclearsolution.models;
+
+public enum ExportFormat {
+
+    NDJSON("ndjson.gz"),
+    CSV("csv.gz"),
+    COLUMNAR("cols.gz");
+
+    private final String fileExtension;
+
+    ExportFormat(String fileExtension) {
+        this.fileExtension = fileExtension;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+}
@@ -0,0 +1,46 @@
+package com.forclearsolution.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class ExportJob {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final String jobId;
+
+    private final ExportFormat format;
+
+    // a path on this server, clients download the file through downloadUrl
+    @JsonIgnore
+    private final String file;
+
+    private volatile Status status = Status.RUNNING;
+
+    private volatile long lastId;
+
+    private volatile long rowsWritten;
+
+    @JsonIgnore
+    private volatile long bytesWritten;
+
+    private volatile String message;
+
+    public ExportJob(String jobId, ExportFormat format, String file) {
+        this.jobId = jobId;
+        this.format = format;
+        this.file = file;
+    }
+
+    // null until the export has completed
+    public String getDownloadUrl() {
+        return status == Status.COMPLETED ? "/users/exports/" + jobId + "/file" : null;
+    }
+}
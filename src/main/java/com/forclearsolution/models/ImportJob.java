@@ -0,0 +1,58 @@
+package com.forclearsolution.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class ImportJob {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final String jobId;
+
+    // paths on this server, clients download the rejected rows through rejectedUrl
+    @JsonIgnore
+    private final String file;
+
+    @JsonIgnore
+    private final String rejectedFile;
+
+    private final long startedAt = System.currentTimeMillis();
+
+    private volatile Status status = Status.RUNNING;
+
+    private volatile long rowsRead;
+
+    private volatile long created;
+
+    private volatile long duplicates;
+
+    private volatile long rejected;
+
+    private volatile Long finishedAt;
+
+    private volatile String message;
+
+    public ImportJob(String jobId, String file, String rejectedFile) {
+        this.jobId = jobId;
+        this.file = file;
+        this.rejectedFile = rejectedFile;
+    }
+
+    // null until the import has completed
+    public String getRejectedUrl() {
+        return status == Status.COMPLETED ? "/users/imports/" + jobId + "/rejected" : null;
+    }
+
+    public long getRowsPerSecond() {
+        long end = finishedAt == null ? System.currentTimeMillis() : finishedAt;
+        long elapsed = Math.max(1, end - startedAt);
+        return (created + duplicates + rejected) * 1000 / elapsed;
+    }
+}
@@ -1,26 +1,34 @@
 package com.forclearsolution.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.forclearsolution.validators.ValidUser;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDate;
 import java.util.Objects;
 
-@AllArgsConstructor
 @NoArgsConstructor
 @Getter
 @Setter
 @ToString
 @Entity
-@Table(name = "users")
+@DynamicUpdate
+@Table(name = "users", indexes = {
+        @Index(name = "ux_users_email", columnList = "email", unique = true),
+        @Index(name = "idx_users_date_of_birth_id", columnList = "dateOfBirth, id")
+})
+@ValidUser
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
-    @Column(name = "email", nullable = false, unique = true)
+    @Column(name = "email", nullable = false)
     private String email;
 
     @Column(name = "firstName", nullable = false)
@@ -38,6 +46,23 @@ public class User {
     @Column(name = "phoneNumber")
     private String phoneNumber;
 
+    // sent to clients as the ETag, not as part of the body
+    @Version
+    @Column(name = "version", nullable = false)
+    @JsonIgnore
+    private Long version;
+
+    public User(Long id, String email, String firstName, String lastName, LocalDate dateOfBirth, String address,
+                String phoneNumber) {
+        this.id = id;
+        this.email = email;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.dateOfBirth = dateOfBirth;
+        this.address = address;
+        this.phoneNumber = phoneNumber;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,30 @@
+package com.forclearsolution.models;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@AllArgsConstructor
+@Getter
+public class UserChange {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private Long id;
+
+    private Long userId;
+
+    private Type type;
+
+    private Instant changedAt;
+
+    // stored as JSON and passed through as is, field -> {"from": ..., "to": ...}
+    @JsonRawValue
+    private String changes;
+}
@@ -0,0 +1,24 @@
+package com.forclearsolution.models;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@AllArgsConstructor
+@Getter
+public class UserFeedEvent {
+
+    private Long seq;
+
+    private Long userId;
+
+    private UserChange.Type type;
+
+    private Instant changedAt;
+
+    // the user as of this change, stored as JSON and passed through as is; null for deletes
+    @JsonRawValue
+    private String user;
+}
@@ -0,0 +1,16 @@
+package com.forclearsolution.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Getter
+public class UserFeedPage {
+
+    private List<UserFeedEvent> events;
+
+    // pass back as since to continue, it stays put while there is nothing new
+    private long nextSince;
+}
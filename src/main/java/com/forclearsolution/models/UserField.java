@@ -0,0 +1,46 @@
+package com.forclearsolution.models;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+public enum UserField {
+
+    ID("id"),
+    EMAIL("email"),
+    FIRST_NAME("firstName"),
+    LAST_NAME("lastName"),
+    DATE_OF_BIRTH("dateOfBirth"),
+    ADDRESS("address"),
+    PHONE_NUMBER("phoneNumber");
+
+    private final String attribute;
+
+    UserField(String attribute) {
+        this.attribute = attribute;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    public static Set<UserField> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return EnumSet.allOf(UserField.class);
+        }
+
+        Set<UserField> result = EnumSet.noneOf(UserField.class);
+        for (String name : fields.split(",")) {
+            result.add(fromAttribute(name.trim()));
+        }
+        return result;
+    }
+
+    public static UserField fromAttribute(String attribute) {
+        for (UserField field : values()) {
+            if (field.attribute.equals(attribute)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown field: " + attribute);
+    }
+}
@@ -0,0 +1,16 @@
+package com.forclearsolution.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+@AllArgsConstructor
+@Getter
+public class UserPage<C> {
+
+    private List<Map<String, Object>> users;
+
+    private C nextCursor;
+}
@@ -0,0 +1,61 @@
+package com.forclearsolution.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+// outcome of a write that callers are expected to branch on, so rejected input never costs an exception
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+public class UserResult {
+
+    public enum Status {
+        OK,
+        INVALID,
+        DUPLICATE,
+        NOT_FOUND,
+        STALE
+    }
+
+    private final Status status;
+
+    private final User user;
+
+    private final List<String> errors;
+
+    public static UserResult ok(User user) {
+        return new UserResult(Status.OK, user, Collections.emptyList());
+    }
+
+    public static UserResult invalid(List<String> errors) {
+        return new UserResult(Status.INVALID, null, errors);
+    }
+
+    public static UserResult duplicate() {
+        return new UserResult(Status.DUPLICATE, null, List.of("This user already exists!"));
+    }
+
+    public static UserResult notFound(Long id) {
+        return new UserResult(Status.NOT_FOUND, null, List.of("User not found with id: " + id));
+    }
+
+    public static UserResult stale(Long id) {
+        return new UserResult(Status.STALE, null, List.of("User " + id + " was modified by another request."));
+    }
+
+    // stale like a lost update, the registration ahead may still fail and leave the email free, so it is worth a retry
+    public static UserResult registrationInProgress() {
+        return new UserResult(Status.STALE, null, List.of("A registration of this email is still in progress, retry shortly."));
+    }
+
+        public boolean isOk() {
+        return status == Status.OK;
+    }
+
+    public String getMessage() {
+        return errors.isEmpty() ? null : errors.get(0);
+    }
+}
@@ -0,0 +1,21 @@
+package com.forclearsolution.repositories;
+
+import com.forclearsolution.models.BirthDateCursor;
+import com.forclearsolution.models.UserField;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface UserViewRepository {
+
+    List<Map<String, Object>> findViews(Set<UserField> fields, long afterId, int limit);
+
+    List<Map<String, Object>> findViewsByDateOfBirthBetween(Set<UserField> fields, LocalDate startDate, LocalDate endDate,
+                                                            BirthDateCursor after, int limit);
+
+    List<Map<String, Object>> findViewsByIds(Set<UserField> fields, Collection<Long> ids);
+
+}
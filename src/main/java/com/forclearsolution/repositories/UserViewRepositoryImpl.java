@@ -0,0 +1,101 @@
+package com.forclearsolution.repositories;
+
+import com.forclearsolution.models.BirthDateCursor;
+import com.forclearsolution.models.User;
+import com.forclearsolution.models.UserField;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.hibernate.jpa.HibernateHints;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class UserViewRepositoryImpl implements UserViewRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Map<String, Object>> findViews(Set<UserField> fields, long afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<User> user = query.from(User.class);
+
+        query.multiselect(selections(user, fields))
+                .where(cb.greaterThan(user.get("id"), afterId))
+                .orderBy(cb.asc(user.get("id")));
+
+        return execute(query, fields, limit);
+    }
+
+    @Override
+    public List<Map<String, Object>> findViewsByDateOfBirthBetween(Set<UserField> fields, LocalDate startDate, LocalDate endDate,
+                                                                   BirthDateCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<User> user = query.from(User.class);
+        Path<LocalDate> dateOfBirth = user.get("dateOfBirth");
+        Path<Long> id = user.get("id");
+
+        Predicate predicate = cb.between(dateOfBirth, startDate, endDate);
+        if (after != null) {
+            predicate = cb.and(predicate, cb.or(
+                    cb.greaterThan(dateOfBirth, after.getDateOfBirth()),
+                    cb.and(cb.equal(dateOfBirth, after.getDateOfBirth()), cb.greaterThan(id, after.getId()))));
+        }
+        query.multiselect(selections(user, fields))
+                .where(predicate)
+                .orderBy(cb.asc(dateOfBirth), cb.asc(id));
+
+        return execute(query, fields, limit);
+    }
+
+    @Override
+    public List<Map<String, Object>> findViewsByIds(Set<UserField> fields, Collection<Long> ids) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<User> user = query.from(User.class);
+
+        query.multiselect(selections(user, fields))
+                .where(user.get("id").in(ids));
+
+        return execute(query, fields, ids.size());
+    }
+
+    private static List<Selection<?>> selections(Root<User> user, Set<UserField> fields) {
+        List<Selection<?>> selections = new ArrayList<>(fields.size());
+        for (UserField field : fields) {
+            selections.add(user.get(field.getAttribute()).alias(field.getAttribute()));
+        }
+        return selections;
+    }
+
+    private List<Map<String, Object>> execute(CriteriaQuery<Tuple> query, Set<UserField> fields, int limit) {
+        List<Tuple> tuples = entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultList();
+
+        List<Map<String, Object>> views = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            Map<String, Object> view = new LinkedHashMap<>();
+            for (UserField field : fields) {
+                view.put(field.getAttribute(), tuple.get(field.getAttribute()));
+            }
+            views.add(view);
+        }
+        return views;
+    }
+}
@@ -0,0 +1,18 @@
+package com.forclearsolution.services;
+
+import com.forclearsolution.models.User;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+public interface ReactiveUserService {
+
+    // empty when there is no user with this id
+    Mono<User> findUserById(Long id);
+
+    Flux<User> listUsers();
+
+    Flux<User> getUsersInDateRange(LocalDate startDate, LocalDate endDate);
+
+}
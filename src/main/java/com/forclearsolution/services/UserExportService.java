@@ -0,0 +1,14 @@
+package com.forclearsolution.services;
+
+import com.forclearsolution.models.ExportFormat;
+import com.forclearsolution.models.ExportJob;
+
+public interface UserExportService {
+
+    ExportJob startExport(ExportFormat format);
+
+    ExportJob resumeExport(String jobId);
+
+    ExportJob getExport(String jobId);
+
+}
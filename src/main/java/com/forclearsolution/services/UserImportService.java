@@ -0,0 +1,11 @@
+package com.forclearsolution.services;
+
+import com.forclearsolution.models.ImportJob;
+
+public interface UserImportService {
+
+    ImportJob startImport(String file);
+
+    ImportJob getImport(String jobId);
+
+}
@@ -1,22 +1,65 @@
 package com.forclearsolution.services;
 
+import com.forclearsolution.models.BatchRowResult;
+import com.forclearsolution.models.BirthDateCursor;
 import com.forclearsolution.models.User;
+import com.forclearsolution.models.UserChange;
+import com.forclearsolution.models.UserFeedPage;
+import com.forclearsolution.models.UserField;
+import com.forclearsolution.models.UserPage;
+import com.forclearsolution.models.UserResult;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface UserService{
 
     User createUser(User user);
 
+    UserResult tryCreateUser(User user);
+
+    List<BatchRowResult> createUsers(List<User> users, int firstIndex);
+
+    List<BatchRowResult> createValidatedUsers(List<User> users, int firstIndex);
+
     User getUserById(Long id);
 
-    List<User> listUsers();
+    Optional<User> findUserById(Long id);
+
+    List<User> listUsers(Long after, int limit);
+
+    List<Map<String, Object>> listUserViews(Long after, int limit, Set<UserField> fields);
+
+    UserPage<Long> searchUsers(String query, Long after, int limit, Set<UserField> fields);
+
+    void streamUsers(Consumer<User> action);
 
     void deleteUser(Long id);
 
+    void deleteUser(Long id, Long expectedVersion);
+
+    UserResult tryDeleteUser(Long id, Long expectedVersion);
+
     User updateUser(User user, Long id);
 
-    List<User> getUsersInDateRange(LocalDate startDate, LocalDate endDate);
+    User updateUser(User user, Long id, Long expectedVersion);
+
+    UserResult tryUpdateUser(User user, Long id, Long expectedVersion);
+
+    List<UserChange> getUserHistory(Long id, Long after, int limit);
+
+    CompletableFuture<UserFeedPage> getChanges(long since, int limit, long waitMillis);
+
+    List<User> getUsersInDateRange(LocalDate startDate, LocalDate endDate, BirthDateCursor after, int limit);
+
+    List<Map<String, Object>> getUserViewsInDateRange(LocalDate startDate, LocalDate endDate, BirthDateCursor after, int limit,
+                                                      Set<UserField> fields);
+
+    long countUsersInDateRange(LocalDate startDate, LocalDate endDate);
 
 }
@@ -0,0 +1,65 @@
+package com.forclearsolution.services.impl;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Bounded multi-producer, single-consumer ring. Producers claim a sequence with a CAS on the tail and then
+// publish into its slot; the consumer takes slots in sequence order until it meets one not yet published.
+final class AuditRingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    // only the consumer writes it
+    private volatile long head;
+
+    AuditRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    boolean offer(T item) {
+        while (true) {
+            long sequence = tail.get();
+            if (sequence - head > mask) {
+                return false;
+            }
+            if (tail.compareAndSet(sequence, sequence + 1)) {
+                slots.lazySet((int) (sequence & mask), item);
+                return true;
+            }
+        }
+    }
+
+    int drainTo(List<T> batch, int max) {
+        long sequence = head;
+        int drained = 0;
+        while (drained < max) {
+            int slot = (int) (sequence & mask);
+            T item = slots.get(slot);
+            if (item == null) {
+                break;
+            }
+            // the slot is cleared before head moves past it, so a producer that sees the new head finds it empty
+            slots.lazySet(slot, null);
+            batch.add(item);
+            sequence++;
+            drained++;
+        }
+        head = sequence;
+        return drained;
+    }
+
+    int size() {
+        return (int) (tail.get() - head);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
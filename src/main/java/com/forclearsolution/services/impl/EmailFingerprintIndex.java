@@ -0,0 +1,224 @@
+package com.forclearsolution.services.impl;
+
+import com.forclearsolution.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+// 64-bit fingerprints of the normalized emails in the users table. A miss means the email is free, a hit
+// only that it may be taken; the unique constraint on users.email still rejects anything the index missed
+@Component
+public class EmailFingerprintIndex {
+
+    private static final long EMPTY = 0L;
+
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private static final long MAX_RETRY_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final UserRepository userRepository;
+
+    private final PlatformTransactionManager transactionManager;
+
+    private final boolean enabled;
+
+    private final TaskFailures loadFailures;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] slots = new long[INITIAL_CAPACITY];
+
+    private int size;
+
+    private volatile boolean loaded;
+
+    @Autowired
+    public EmailFingerprintIndex(UserRepository userRepository, PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry, @Value("${emailIndexEnabled}") boolean enabled) {
+        this.userRepository = userRepository;
+        this.transactionManager = transactionManager;
+        this.enabled = enabled;
+        this.loadFailures = new TaskFailures(EmailFingerprintIndex.class, "email-index-load", meterRegistry);
+    }
+
+    // an index over an empty table that answers right away, or one that always defers to the database
+    public EmailFingerprintIndex(boolean enabled) {
+        this.userRepository = null;
+        this.transactionManager = null;
+        this.enabled = enabled;
+        this.loadFailures = null;
+        this.loaded = true;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+
+        // until the load succeeds every lookup defers to the database, so a failed one is retried rather than given up;
+        // fingerprints a failed attempt already added stay, at worst they send a free email to the database
+        Thread loader = new Thread(() -> {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(true);
+            long backoff = 0;
+            while (!loaded) {
+                try {
+                    transaction.executeWithoutResult(status -> {
+                        try (Stream<String> emails = userRepository.streamAllEmails()) {
+                            emails.forEach(this::add);
+                        }
+                    });
+                    loaded = true;
+                } catch (RuntimeException e) {
+                    loadFailures.record(e);
+                    backoff = Math.min(Math.max(backoff * 2, TimeUnit.MILLISECONDS.toNanos(100)), MAX_RETRY_BACKOFF_NANOS);
+                    LockSupport.parkNanos(backoff);
+                }
+            }
+        }, "email-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    public boolean mightContain(String email) {
+        if (!enabled || !loaded || email == null) {
+            return true;
+        }
+
+        long fingerprint = fingerprint(email);
+        lock.readLock().lock();
+        try {
+            return slotOf(fingerprint) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void add(String email) {
+        if (!enabled || email == null) {
+            return;
+        }
+
+        long fingerprint = fingerprint(email);
+        lock.writeLock().lock();
+        try {
+            if (slotOf(fingerprint) >= 0) {
+                return;
+            }
+            if ((size + 1) * 4L > slots.length * 3L) {
+                resize(slots.length * 2);
+            }
+            insert(slots, fingerprint);
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String email) {
+        if (!enabled || email == null) {
+            return;
+        }
+
+        long fingerprint = fingerprint(email);
+        lock.writeLock().lock();
+        try {
+            int slot = slotOf(fingerprint);
+            if (slot < 0) {
+                return;
+            }
+
+            // backward-shift deletion keeps every remaining probe chain unbroken without tombstones
+            int mask = slots.length - 1;
+            int hole = slot;
+            int next = hole;
+            while (true) {
+                next = (next + 1) & mask;
+                if (slots[next] == EMPTY) {
+                    break;
+                }
+                int home = home(slots[next], mask);
+                boolean homeBetween = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+                if (!homeBetween) {
+                    slots[hole] = slots[next];
+                    hole = next;
+                }
+            }
+            slots[hole] = EMPTY;
+            size--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int slotOf(long fingerprint) {
+        int mask = slots.length - 1;
+        for (int slot = home(fingerprint, mask); ; slot = (slot + 1) & mask) {
+            if (slots[slot] == fingerprint) {
+                return slot;
+            }
+            if (slots[slot] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] resized = new long[capacity];
+        for (long fingerprint : slots) {
+            if (fingerprint != EMPTY) {
+                insert(resized, fingerprint);
+            }
+        }
+        slots = resized;
+    }
+
+    private static void insert(long[] table, long fingerprint) {
+        int mask = table.length - 1;
+        int slot = home(fingerprint, mask);
+        while (table[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = fingerprint;
+    }
+
+    private static int home(long fingerprint, int mask) {
+        return (int) fingerprint & mask;
+    }
+
+    // FNV-1a over the normalized email followed by the SplitMix64 finalizer
+    static long fingerprint(String email) {
+        String normalized = email.trim().toLowerCase(Locale.ROOT);
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < normalized.length(); i++) {
+            hash ^= normalized.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        hash ^= hash >>> 31;
+        return hash == EMPTY ? 1L : hash;
+    }
+}
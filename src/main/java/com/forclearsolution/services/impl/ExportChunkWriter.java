@@ -0,0 +1,115 @@
+package com.forclearsolution.services.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forclearsolution.models.ExportFormat;
+import com.forclearsolution.models.UserField;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+class ExportChunkWriter {
+
+    static final byte[] COLUMNAR_MAGIC = {'U', 'S', 'R', 'C', 1};
+
+    private static final UserField[] COLUMNS = UserField.values();
+
+    private final ExportFormat format;
+
+    private final ObjectMapper objectMapper;
+
+    ExportChunkWriter(ExportFormat format, ObjectMapper objectMapper) {
+        this.format = format;
+        this.objectMapper = objectMapper;
+    }
+
+    void writeHeader(OutputStream out) throws IOException {
+        switch (format) {
+            case CSV -> {
+                StringBuilder header = new StringBuilder();
+                for (UserField column : COLUMNS) {
+                    if (!header.isEmpty()) {
+                        header.append(',');
+                    }
+                    header.append(column.getAttribute());
+                }
+                out.write(header.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+            }
+            case COLUMNAR -> {
+                DataOutputStream data = new DataOutputStream(out);
+                data.write(COLUMNAR_MAGIC);
+                data.writeShort(COLUMNS.length);
+                for (UserField column : COLUMNS) {
+                    data.writeUTF(column.getAttribute());
+                }
+                data.flush();
+            }
+            case NDJSON -> {
+            }
+        }
+    }
+
+    void writeRows(List<Map<String, Object>> rows, OutputStream out) throws IOException {
+        switch (format) {
+            case NDJSON -> {
+                for (Map<String, Object> row : rows) {
+                    out.write(objectMapper.writeValueAsBytes(row));
+                    out.write('\n');
+                }
+            }
+            case CSV -> {
+                StringBuilder line = new StringBuilder(256);
+                for (Map<String, Object> row : rows) {
+                    line.setLength(0);
+                    for (UserField column : COLUMNS) {
+                        if (column != COLUMNS[0]) {
+                            line.append(',');
+                        }
+                        appendCsvValue(line, row.get(column.getAttribute()));
+                    }
+                    out.write(line.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            case COLUMNAR -> writeColumnarBlock(rows, out);
+        }
+    }
+
+    // one block per chunk: the row count, then every column's values back to back
+    private static void writeColumnarBlock(List<Map<String, Object>> rows, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(rows.size());
+        for (UserField column : COLUMNS) {
+            for (Map<String, Object> row : rows) {
+                Object value = row.get(column.getAttribute());
+                if (column == UserField.ID) {
+                    data.writeLong((Long) value);
+                } else if (column == UserField.DATE_OF_BIRTH) {
+                    data.writeLong(value == null ? Long.MIN_VALUE : ((LocalDate) value).toEpochDay());
+                } else if (value == null) {
+                    data.writeInt(-1);
+                } else {
+                    byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+                    data.writeInt(bytes.length);
+                    data.write(bytes);
+                }
+            }
+        }
+        data.flush();
+    }
+
+    private static void appendCsvValue(StringBuilder line, Object value) {
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            line.append(text);
+            return;
+        }
+        line.append('"').append(text.replace("\"", "\"\"")).append('"');
+    }
+}
@@ -0,0 +1,65 @@
+package com.forclearsolution.services.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+class ImportLineReader {
+
+    interface LineConsumer {
+        void accept(byte[] data, int offset, int length) throws InterruptedException;
+    }
+
+    private static final int INITIAL_BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+
+    ImportLineReader(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    // hands out each line straight from the read buffer, the consumer must copy what it keeps
+    void forEachLine(LineConsumer consumer) throws IOException, InterruptedException {
+        ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        boolean endOfFile = false;
+
+        while (!endOfFile) {
+            endOfFile = channel.read(buffer) < 0;
+            buffer.flip();
+
+            byte[] data = buffer.array();
+            int lineStart = buffer.position();
+            int limit = buffer.limit();
+            for (int i = lineStart; i < limit; i++) {
+                if (data[i] == '\n') {
+                    emit(consumer, data, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+
+            if (endOfFile) {
+                if (limit > lineStart) {
+                    emit(consumer, data, lineStart, limit);
+                }
+                return;
+            }
+
+            buffer.position(lineStart);
+            if (lineStart == 0 && limit == buffer.capacity()) {
+                // a single line is longer than the buffer
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+        }
+    }
+
+    private static void emit(LineConsumer consumer, byte[] data, int start, int end) throws InterruptedException {
+        if (end > start && data[end - 1] == '\r') {
+            end--;
+        }
+        consumer.accept(data, start, end - start);
+    }
+}
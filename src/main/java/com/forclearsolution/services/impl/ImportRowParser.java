@@ -0,0 +1,138 @@
+package com.forclearsolution.services.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forclearsolution.models.User;
+import com.forclearsolution.models.UserField;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+class ImportRowParser {
+
+    private final ObjectMapper objectMapper;
+
+    // null for NDJSON input, otherwise the columns named by the CSV header
+    private final UserField[] columns;
+
+    private ImportRowParser(ObjectMapper objectMapper, UserField[] columns) {
+        this.objectMapper = objectMapper;
+        this.columns = columns;
+    }
+
+    static ImportRowParser ndjson(ObjectMapper objectMapper) {
+        return new ImportRowParser(objectMapper, null);
+    }
+
+    static ImportRowParser csv(byte[] header, int offset, int length) {
+        List<String> names = splitCsv(header, offset, length);
+        UserField[] columns = new UserField[names.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = UserField.fromAttribute(names.get(i) == null ? "" : names.get(i).trim());
+        }
+        return new ImportRowParser(null, columns);
+    }
+
+    User parse(byte[] data, int offset, int length) {
+        User user = columns == null ? parseJson(data, offset, length) : parseCsv(data, offset, length);
+        // ids always come from the sequence, an imported id must never turn the insert into a merge
+        user.setId(null);
+        return user;
+    }
+
+    private User parseJson(byte[] data, int offset, int length) {
+        try {
+            return objectMapper.readValue(data, offset, length, User.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed row.");
+        }
+    }
+
+    private User parseCsv(byte[] data, int offset, int length) {
+        List<String> values = splitCsv(data, offset, length);
+        if (values.size() != columns.length) {
+            throw new IllegalArgumentException("Malformed row.");
+        }
+
+        User user = new User();
+        for (int i = 0; i < columns.length; i++) {
+            String value = values.get(i);
+            switch (columns[i]) {
+                case EMAIL -> user.setEmail(value);
+                case FIRST_NAME -> user.setFirstName(value);
+                case LAST_NAME -> user.setLastName(value);
+                case DATE_OF_BIRTH -> user.setDateOfBirth(parseDate(value));
+                case ADDRESS -> user.setAddress(value);
+                case PHONE_NUMBER -> user.setPhoneNumber(value);
+                case ID -> {
+                }
+            }
+        }
+        return user;
+    }
+
+    private static LocalDate parseDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date of birth format. Please use YYYY-MM-DD format.");
+        }
+    }
+
+    // RFC 4180 fields without embedded line breaks; an empty unquoted field is null
+    private static List<String> splitCsv(byte[] data, int offset, int length) {
+        List<String> values = new ArrayList<>(8);
+        int end = offset + length;
+        int i = offset;
+
+        while (true) {
+            if (i < end && data[i] == '"') {
+                StringBuilder value = null;
+                int segmentStart = ++i;
+                while (true) {
+                    if (i >= end) {
+                        throw new IllegalArgumentException("Malformed row.");
+                    }
+                    if (data[i] == '"') {
+                        if (i + 1 < end && data[i + 1] == '"') {
+                            value = append(value, data, segmentStart, i + 1);
+                            i += 2;
+                            segmentStart = i;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                value = append(value, data, segmentStart, i);
+                values.add(value.toString());
+                i++;
+                if (i < end && data[i] != ',') {
+                    throw new IllegalArgumentException("Malformed row.");
+                }
+            } else {
+                int start = i;
+                while (i < end && data[i] != ',') {
+                    i++;
+                }
+                values.add(i == start ? null : new String(data, start, i - start, StandardCharsets.UTF_8));
+            }
+
+            if (i >= end) {
+                return values;
+            }
+            i++;
+        }
+    }
+
+    private static StringBuilder append(StringBuilder value, byte[] data, int start, int end) {
+        StringBuilder result = value == null ? new StringBuilder(end - start) : value;
+        return result.append(new String(data, start, end - start, StandardCharsets.UTF_8));
+    }
+}
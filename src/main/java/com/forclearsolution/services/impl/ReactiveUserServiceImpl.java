@@ -0,0 +1,60 @@
+package com.forclearsolution.services.impl;
+
+import com.forclearsolution.models.BirthDateCursor;
+import com.forclearsolution.models.User;
+import com.forclearsolution.services.ReactiveUserService;
+import com.forclearsolution.services.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDate;
+import java.util.concurrent.Callable;
+
+@Service
+public class ReactiveUserServiceImpl implements ReactiveUserService {
+
+    private static final int PAGE_SIZE = 500;
+
+    private final UserService userService;
+
+    @Autowired
+    public ReactiveUserServiceImpl(UserService userService) {
+        this.userService = userService;
+    }
+
+    @Override
+    public Mono<User> findUserById(Long id) {
+        return blocking(() -> userService.findUserById(id)).flatMap(Mono::justOrEmpty);
+    }
+
+    // pages are fetched as the subscriber requests more, at most one page ahead of what it has consumed
+    @Override
+    public Flux<User> listUsers() {
+        return blocking(() -> userService.listUsers(null, PAGE_SIZE))
+                .expand(page -> page.size() < PAGE_SIZE
+                        ? Mono.empty()
+                        : blocking(() -> userService.listUsers(page.get(page.size() - 1).getId(), PAGE_SIZE)))
+                .concatMapIterable(page -> page, 1);
+    }
+
+    @Override
+    public Flux<User> getUsersInDateRange(LocalDate startDate, LocalDate endDate) {
+        return blocking(() -> userService.getUsersInDateRange(startDate, endDate, null, PAGE_SIZE))
+                .expand(page -> {
+                    if (page.size() < PAGE_SIZE) {
+                        return Mono.empty();
+                    }
+                    User last = page.get(page.size() - 1);
+                    BirthDateCursor after = new BirthDateCursor(last.getDateOfBirth(), last.getId());
+                    return blocking(() -> userService.getUsersInDateRange(startDate, endDate, after, PAGE_SIZE));
+                })
+                .concatMapIterable(page -> page, 1);
+    }
+
+    private <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+}
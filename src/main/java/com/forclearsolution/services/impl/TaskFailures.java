@@ -0,0 +1,49 @@
+package com.forclearsolution.services.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Failures of a background task, which has no caller to throw to and is retried on its next run. Every failure is
+// counted in users.background.failures; the log gets one WARN per interval at most, so a task failing on each tick
+// of a short schedule does not flood it
+class TaskFailures {
+
+    private static final long LOG_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Logger log;
+
+    private final String task;
+
+    private final Counter failures;
+
+    private final AtomicLong nextLogAt = new AtomicLong(System.nanoTime());
+
+    private final AtomicLong unlogged = new AtomicLong();
+
+    TaskFailures(Class<?> owner, String task, MeterRegistry meterRegistry) {
+        this.log = LoggerFactory.getLogger(owner);
+        this.task = task;
+        this.failures = meterRegistry.counter("users.background.failures", "task", task);
+    }
+
+    void record(Exception e) {
+        failures.increment();
+        long now = System.nanoTime();
+        long logAt = nextLogAt.get();
+        if (now - logAt < 0 || !nextLogAt.compareAndSet(logAt, now + LOG_INTERVAL_NANOS)) {
+            unlogged.incrementAndGet();
+            return;
+        }
+        long skipped = unlogged.getAndSet(0);
+        if (skipped > 0) {
+            log.warn("{} failed, {} more failures since the last warning", task, skipped, e);
+        } else {
+            log.warn("{} failed", task, e);
+        }
+    }
+}
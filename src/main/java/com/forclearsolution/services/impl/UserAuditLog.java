@@ -0,0 +1,250 @@
+package com.forclearsolution.services.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forclearsolution.models.User;
+import com.forclearsolution.models.UserChange;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+// Write-behind change log. Writes publish their diff into a ring buffer once they commit, and a single writer
+// thread drains it into user_audit in JDBC batches. A full buffer makes writers wait for room; on shutdown the
+// writer drains everything before the data source goes away, and later events are written synchronously.
+@Component
+public class UserAuditLog {
+
+    private static final Map<String, Function<User, Object>> FIELDS = new LinkedHashMap<>();
+
+    static {
+        FIELDS.put("email", User::getEmail);
+        FIELDS.put("firstName", User::getFirstName);
+        FIELDS.put("lastName", User::getLastName);
+        FIELDS.put("dateOfBirth", User::getDateOfBirth);
+        FIELDS.put("address", User::getAddress);
+        FIELDS.put("phoneNumber", User::getPhoneNumber);
+    }
+
+    private static final String INSERT_SQL =
+            "insert into user_audit (user_id, change_type, changed_at, changes) values (?, ?, ?, ?)";
+
+    private static final String HISTORY_SQL = "select id, user_id, change_type, changed_at, changes from user_audit"
+            + " where user_id = ? and id > ? order by id limit ?";
+
+    private static final long MAX_RETRY_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private record FieldChange(Object from, Object to) {
+    }
+
+    private record Event(Long userId, UserChange.Type type, Instant changedAt, Map<String, FieldChange> changes) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final AuditRingBuffer<Event> buffer;
+
+    private final int batchSize;
+
+    private final long flushIntervalNanos;
+
+    private final long offerTimeoutNanos;
+
+    private final Counter written;
+
+    private final Counter dropped;
+
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    @Autowired
+    public UserAuditLog(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                        @Value("${auditBufferSize}") int bufferSize,
+                        @Value("${auditBatchSize}") int batchSize,
+                        @Value("${auditFlushIntervalMillis}") long flushIntervalMillis,
+                        @Value("${auditOfferTimeoutMillis}") long offerTimeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.buffer = new AuditRingBuffer<>(bufferSize);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.offerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+        this.written = meterRegistry.counter("users.audit.events", "outcome", "written");
+        this.dropped = meterRegistry.counter("users.audit.events", "outcome", "dropped");
+        Gauge.builder("users.audit.pending", buffer, AuditRingBuffer::size).register(meterRegistry);
+
+        this.writer = new Thread(this::drain, "user-audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void recordCreated(User user) {
+        record(List.of(new Event(user.getId(), UserChange.Type.CREATED, Instant.now(), diff(null, user))));
+    }
+
+    public void recordCreated(List<User> users) {
+        Instant now = Instant.now();
+        List<Event> events = new ArrayList<>(users.size());
+        for (User user : users) {
+            events.add(new Event(user.getId(), UserChange.Type.CREATED, now, diff(null, user)));
+        }
+        record(events);
+    }
+
+    // before is a detached copy taken ahead of the patch, after the saved entity
+    public void recordUpdated(User before, User after) {
+        Map<String, FieldChange> changes = diff(before, after);
+        if (!changes.isEmpty()) {
+            record(List.of(new Event(after.getId(), UserChange.Type.UPDATED, Instant.now(), changes)));
+        }
+    }
+
+    // before is the row as it was locked ahead of the delete, null when it was already gone
+    public void recordDeleted(Long id, User before) {
+        Map<String, FieldChange> changes = before == null ? Map.of() : diff(before, null);
+        record(List.of(new Event(id, UserChange.Type.DELETED, Instant.now(), changes)));
+    }
+
+    public List<UserChange> history(Long userId, Long after, int limit) {
+        return jdbcTemplate.query(HISTORY_SQL, (rs, rowNum) -> new UserChange(
+                rs.getLong("id"),
+                rs.getLong("user_id"),
+                UserChange.Type.valueOf(rs.getString("change_type")),
+                rs.getTimestamp("changed_at").toInstant(),
+                rs.getString("changes")), userId, after == null ? 0L : after, limit);
+    }
+
+    public int pending() {
+        return buffer.size();
+    }
+
+    private static Map<String, FieldChange> diff(User before, User after) {
+        Map<String, FieldChange> changes = new LinkedHashMap<>();
+        for (Map.Entry<String, Function<User, Object>> field : FIELDS.entrySet()) {
+            Object from = before == null ? null : field.getValue().apply(before);
+            Object to = after == null ? null : field.getValue().apply(after);
+            if (!Objects.equals(from, to)) {
+                changes.put(field.getKey(), new FieldChange(from, to));
+            }
+        }
+        return changes;
+    }
+
+    // rolled back writes must not show up in the history
+    private void record(List<Event> events) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(events);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(events);
+            }
+        });
+    }
+
+    private void publish(List<Event> events) {
+        for (Event event : events) {
+            if (!running) {
+                write(List.of(event));
+                continue;
+            }
+            if (!offer(event)) {
+                dropped.increment();
+            }
+        }
+    }
+
+    // backpressure: wait with growing pauses while the writer frees room, up to the offer timeout
+    private boolean offer(Event event) {
+        long deadline = System.nanoTime() + offerTimeoutNanos;
+        long pause = TimeUnit.MICROSECONDS.toNanos(50);
+        while (!buffer.offer(event)) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(pause);
+            pause = Math.min(pause * 2, TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        return true;
+    }
+
+    private void drain() {
+        List<Event> batch = new ArrayList<>(batchSize);
+        long backoff = 0;
+        while (running || buffer.size() > 0 || !batch.isEmpty()) {
+            if (batch.isEmpty() && buffer.drainTo(batch, batchSize) == 0) {
+                LockSupport.parkNanos(flushIntervalNanos);
+                continue;
+            }
+            try {
+                write(batch);
+                batch.clear();
+                backoff = 0;
+            } catch (RuntimeException e) {
+                // keep the batch and retry, producers wait on the full buffer meanwhile
+                if (!running) {
+                    dropped.increment(batch.size());
+                    batch.clear();
+                    continue;
+                }
+                backoff = Math.min(Math.max(backoff * 2, TimeUnit.MILLISECONDS.toNanos(100)), MAX_RETRY_BACKOFF_NANOS);
+                LockSupport.parkNanos(backoff);
+            }
+        }
+    }
+
+    private void write(List<Event> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (Event event : batch) {
+            rows.add(new Object[]{event.userId(), event.type().name(), Timestamp.from(event.changedAt()), json(event.changes())});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        written.increment(batch.size());
+    }
+
+    private String json(Map<String, FieldChange> changes) {
+        try {
+            return objectMapper.writeValueAsString(changes);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize audit changes.", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        if (!writer.isAlive()) {
+            // events offered while the writer was finishing its last batch
+            List<Event> rest = new ArrayList<>();
+            while (buffer.drainTo(rest, batchSize) > 0) {
+                write(rest);
+                rest.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.forclearsolution.services.impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.function.Supplier;
+
+// Loads what goes into the users and userPages caches, which every client shares. The load is a read-only
+// transaction like any other read, so it runs on a replica; its first statement checks that the replica already
+// holds the outbox events of the generation the result is cached under, and a result read from a replica that is
+// still behind them is served but not cached.
+@Component
+public class UserCacheLoader {
+
+    public record Load<T>(T value, boolean cacheable) {
+    }
+
+    private final UserChangeTracker changeTracker;
+
+    private final UserChangeFeed changeFeed;
+
+    @Autowired
+    public UserCacheLoader(UserChangeTracker changeTracker, UserChangeFeed changeFeed) {
+        this.changeTracker = changeTracker;
+        this.changeFeed = changeFeed;
+    }
+
+    // the check comes first, on MySQL the first read of a transaction fixes the snapshot the loader reads too
+    @Transactional(readOnly = true)
+    public <T> Load<T> load(long generation, Supplier<T> loader) {
+        UserChangeTracker.Fence fence = changeTracker.fence();
+        boolean current = fence != null && fence.generation() == generation
+                && (fence.events() == 0 || changeFeed.holds(fence));
+        return new Load<>(loader.get(), current);
+    }
+}
@@ -0,0 +1,310 @@
+package com.forclearsolution.services.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forclearsolution.models.User;
+import com.forclearsolution.models.UserChange;
+import com.forclearsolution.models.UserFeedEvent;
+import com.forclearsolution.models.UserFeedPage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Change feed backed by the user_outbox table. Writes append their event in the same transaction as the user change,
+// so consumers never see a rolled back write and never miss a committed one. Readers page by seq and may park on a
+// long poll; local commits wake them at once, writes made by other instances are picked up on the next poll tick.
+// Events are kept for changeFeedRetentionHours, a consumer further behind than that skips the purged ones.
+@Component
+public class UserChangeFeed {
+
+    // changed_at comes from the database clock, the gap check below compares it with the same clock
+    private static final String INSERT_SQL =
+            "insert into user_outbox (user_id, change_type, changed_at, payload) values (?, ?, current_timestamp(6), ?)";
+
+    private static final String READ_SQL = "select seq, user_id, change_type, changed_at, payload from user_outbox"
+            + " where seq > ? order by seq limit ?";
+
+    private static final String LATEST_SQL = "select coalesce(max(seq), 0) from user_outbox";
+
+    private static final String OLDEST_SQL = "select coalesce(min(seq), 0) from user_outbox";
+
+    private static final String COUNT_SQL = "select count(*) from user_outbox where seq > ? and seq <= ?";
+
+    private static final String GAP_SQL = "select count(*), current_timestamp(6) from user_outbox where seq > ? and seq < ?";
+
+    private static final String PURGE_CUTOFF_SQL = "select coalesce(max(seq), 0) from user_outbox where changed_at < ?";
+
+    private static final String PURGE_SQL = "delete from user_outbox where seq <= ?";
+
+    private static final long PURGE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final RowMapper<UserFeedEvent> EVENT_MAPPER = (rs, rowNum) -> new UserFeedEvent(
+            rs.getLong("seq"),
+            rs.getLong("user_id"),
+            UserChange.Type.valueOf(rs.getString("change_type")),
+            rs.getTimestamp("changed_at").toInstant(),
+            rs.getString("payload"));
+
+    private record Waiter(long since, int limit, long deadline, CompletableFuture<UserFeedPage> result) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final long gapWaitMillis;
+
+    private final Duration retention;
+
+    // first missing seq of the holes this instance confirmed empty, so passing one again needs no query
+    private final Cache<Long, Boolean> abandonedGaps;
+
+    private final Counter gapsAbandoned;
+
+    private final TaskFailures purgeFailures;
+
+    private final TaskFailures wakeFailures;
+
+    // holes at or below this are events the purge removed, not transactions in flight
+    private volatile long purgedThrough;
+
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean wakeScheduled = new AtomicBoolean();
+
+    private final ScheduledExecutorService poller;
+
+    @Autowired
+    public UserChangeFeed(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                          @Value("${changeFeedPollMillis}") long pollMillis,
+                          @Value("${changeFeedGapWaitMillis}") long gapWaitMillis,
+                          @Value("${changeFeedRetentionHours}") long retentionHours) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.gapWaitMillis = gapWaitMillis;
+        this.retention = Duration.ofHours(retentionHours);
+        this.abandonedGaps = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMillis(gapWaitMillis).multipliedBy(10))
+                .maximumSize(10_000)
+                .build();
+        this.gapsAbandoned = meterRegistry.counter("users.feed.gaps.abandoned");
+        this.purgeFailures = new TaskFailures(UserChangeFeed.class, "feed-purge", meterRegistry);
+        this.wakeFailures = new TaskFailures(UserChangeFeed.class, "feed-wake", meterRegistry);
+        Gauge.builder("users.feed.waiters", waiters, Queue::size).register(meterRegistry);
+
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-feed-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::wakeWaiters, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        poller.scheduleWithFixedDelay(this::purgeExpired, pollMillis, PURGE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void appendCreated(User user) {
+        append(Collections.singletonList(row(user.getId(), UserChange.Type.CREATED, json(user))));
+    }
+
+    public void appendCreated(List<User> users) {
+        List<Object[]> rows = new ArrayList<>(users.size());
+        for (User user : users) {
+            rows.add(row(user.getId(), UserChange.Type.CREATED, json(user)));
+        }
+        append(rows);
+    }
+
+    public void appendUpdated(User user) {
+        append(Collections.singletonList(row(user.getId(), UserChange.Type.UPDATED, json(user))));
+    }
+
+    public void appendDeleted(Long id) {
+        append(Collections.singletonList(row(id, UserChange.Type.DELETED, null)));
+    }
+
+    // completes at once when there are events after since, otherwise on the first commit or at the end of the wait
+    public CompletableFuture<UserFeedPage> poll(long since, int limit, long waitMillis) {
+        UserFeedPage page = read(since, limit);
+        if (!page.getEvents().isEmpty() || waitMillis <= 0) {
+            return CompletableFuture.completedFuture(page);
+        }
+        Waiter waiter = new Waiter(since, limit, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis),
+                new CompletableFuture<>());
+        waiters.add(waiter);
+        return waiter.result();
+    }
+
+    public UserFeedPage read(long since, int limit) {
+        List<UserFeedEvent> events = jdbcTemplate.query(READ_SQL, EVENT_MAPPER, since, limit);
+
+        // auto increment hands out seq before commit, so a hole is either a transaction still in flight or one that
+        // rolled back; stop in front of it until it is confirmed empty
+        long next = since;
+        int end = 0;
+        for (UserFeedEvent event : events) {
+            if (event.getSeq() != next + 1 && !gapAbandoned(next, event)) {
+                break;
+            }
+            next = event.getSeq();
+            end++;
+        }
+        return new UserFeedPage(events.subList(0, end), next);
+    }
+
+    public long latest() {
+        return jdbcTemplate.queryForObject(LATEST_SQL, Long.class);
+    }
+
+    // 0 when the outbox is empty
+    public long oldest() {
+        return jdbcTemplate.queryForObject(OLDEST_SQL, Long.class);
+    }
+
+    // run in the caller's transaction, so it answers for the snapshot the caller's other reads see
+    public boolean holds(UserChangeTracker.Fence fence) {
+        return jdbcTemplate.queryForObject(COUNT_SQL, Long.class, fence.afterSeq(), fence.throughSeq()) >= fence.events();
+    }
+
+    // The missing seqs were handed out before the event after the hole was inserted, so a transaction holding one
+    // has been open at least since that event's changed_at. Once the database clock is gapWaitMillis past it, the
+    // holder is taken to have ended, and the hole is passed only if a fresh read still finds nothing in it; a hole
+    // that filled in the meantime is returned by the next read.
+    private boolean gapAbandoned(long before, UserFeedEvent after) {
+        // the part of the hole the purge removed needs no check
+        before = Math.max(before, purgedThrough);
+        if (after.getSeq() - 1 <= before || abandonedGaps.getIfPresent(before + 1) != null) {
+            return true;
+        }
+        boolean abandoned = Boolean.TRUE.equals(jdbcTemplate.queryForObject(GAP_SQL, (rs, rowNum) -> rs.getLong(1) == 0
+                && Duration.between(after.getChangedAt(), rs.getTimestamp(2).toInstant()).toMillis() >= gapWaitMillis,
+                before, after.getSeq()));
+        if (abandoned) {
+            abandonedGaps.put(before + 1, true);
+            gapsAbandoned.increment();
+        }
+        return abandoned;
+    }
+
+    // keeps the outbox bounded by the retention, once a minute per instance; the delete goes by seq so it only
+    // touches the primary key range below the newest expired event
+    private void purgeExpired() {
+        try {
+            long cutoff = jdbcTemplate.queryForObject(PURGE_CUTOFF_SQL, Long.class, Timestamp.from(Instant.now().minus(retention)));
+            if (cutoff > 0) {
+                jdbcTemplate.update(PURGE_SQL, cutoff);
+                purgedThrough = Math.max(purgedThrough, cutoff);
+            }
+        } catch (RuntimeException e) {
+            // a failed purge must not cancel the schedule, it is retried on the next tick
+            purgeFailures.record(e);
+        }
+    }
+
+    private static Object[] row(Long userId, UserChange.Type type, String payload) {
+        return new Object[]{userId, type.name(), payload};
+    }
+
+    // joins the caller's transaction through the connection bound to it, so the event commits or rolls back with it
+    private void append(List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            scheduleWake();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                scheduleWake();
+            }
+        });
+    }
+
+    // a burst of commits collapses into one pass over the waiters
+    private void scheduleWake() {
+        if (!waiters.isEmpty() && wakeScheduled.compareAndSet(false, true)) {
+            poller.execute(this::wakeWaiters);
+        }
+    }
+
+    private void wakeWaiters() {
+        wakeScheduled.set(false);
+        if (waiters.isEmpty()) {
+            return;
+        }
+        try {
+            long latest = latest();
+            long now = System.nanoTime();
+            // waiters are mostly caught up consumers sharing the same since, one read serves all of them
+            Map<List<Long>, UserFeedPage> pages = new HashMap<>();
+            for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+                Waiter waiter = it.next();
+                if (waiter.result().isDone()) {
+                    it.remove();
+                    continue;
+                }
+                if (latest > waiter.since()) {
+                    UserFeedPage page = pages.computeIfAbsent(List.of(waiter.since(), (long) waiter.limit()),
+                            key -> read(waiter.since(), waiter.limit()));
+                    if (!page.getEvents().isEmpty()) {
+                        it.remove();
+                        waiter.result().complete(page);
+                        continue;
+                    }
+                }
+                if (now - waiter.deadline() >= 0) {
+                    it.remove();
+                    waiter.result().complete(new UserFeedPage(List.of(), waiter.since()));
+                }
+            }
+        } catch (RuntimeException e) {
+            // a failed pass must not cancel the schedule, waiters are retried on the next tick
+            wakeFailures.record(e);
+        }
+    }
+
+    private String json(User user) {
+        try {
+            return objectMapper.writeValueAsString(user);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize user " + user.getId() + " for the change feed.", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        poller.shutdownNow();
+        Waiter waiter;
+        while ((waiter = waiters.poll()) != null) {
+            waiter.result().complete(new UserFeedPage(List.of(), waiter.since()));
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.forclearsolution.services.impl;
+
+import com.forclearsolution.models.UserFeedEvent;
+import com.forclearsolution.models.UserFeedPage;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+// Counts committed writes to the users table. Anything derived from the table can be keyed by the
+// generation it was read at, so a write makes it unreachable without tracking what it touched.
+// Writes of this instance bump it at commit; writes of other instances are seen through the change feed's
+// outbox, at most one poll interval after they commit. Generations and ETags are numbered per instance.
+// Caches keyed by user id subscribe to the ids of changed users, which are handed out only after the bump.
+// Once the poller has read back every write a generation counts, it fences the generation with the outbox events
+// that make it up, so a read on a replica can tell whether the replica has applied them yet.
+@Component
+public class UserChangeTracker {
+
+    // transactions still in flight when this instance started hold seqs just below the latest one
+    private static final int STARTUP_LOOKBACK = 1000;
+
+    private static final int READ_LIMIT = 1000;
+
+    public record Generation(long number, Instant lastModified, String etag) {
+    }
+
+    // the events with seq in (afterSeq, throughSeq] all belong to the generation and committed after every write of
+    // the fenced generations before it, so a replica that applies commits in the primary's order and holds all of
+    // them holds every write the generation counts
+    public record Fence(long generation, long afterSeq, long throughSeq, long events) {
+    }
+
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicReference<Generation> current = new AtomicReference<>(generation(0));
+
+    private final List<Consumer<Collection<Long>>> listeners = new CopyOnWriteArrayList<>();
+
+    private final UserChangeFeed changeFeed;
+
+    private final ScheduledExecutorService poller;
+
+    private final TaskFailures pollFailures;
+
+    private volatile Fence fence;
+
+    // only touched by the poller thread
+    private long seenSeq = -1;
+
+    // events read since the last fence, which ended at fencedSeq; only touched by the poller thread
+    private long fencedSeq;
+
+    private long unfencedEvents;
+
+    // a tracker that only knows about the writes of this instance
+    public UserChangeTracker() {
+        this.changeFeed = null;
+        this.poller = null;
+        this.pollFailures = null;
+    }
+
+    @Autowired
+    public UserChangeTracker(UserChangeFeed changeFeed, MeterRegistry meterRegistry,
+                             @Value("${changeFeedPollMillis}") long pollMillis) {
+        this.changeFeed = changeFeed;
+        this.pollFailures = new TaskFailures(UserChangeTracker.class, "generation-poll", meterRegistry);
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-generation-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::pollSharedWrites, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public Generation current() {
+        return current.get();
+    }
+
+    // null while the current generation counts a write the poller has not read back from the outbox; without a feed
+    // there are no other instances and no events, and a generation needs no more than what committed before it
+    public Fence fence() {
+        long number = current().number();
+        if (changeFeed == null) {
+            return new Fence(number, 0, 0, 0);
+        }
+        Fence fence = this.fence;
+        return fence != null && fence.generation() == number ? fence : null;
+    }
+
+    public void onWrite(Consumer<Collection<Long>> listener) {
+        listeners.add(listener);
+    }
+
+    public void recordWrite() {
+        recordWrite(List.of());
+    }
+
+    public void recordWrite(Long userId) {
+        recordWrite(Collections.singletonList(userId));
+    }
+
+    // bumped only after commit, so a reader can never cache rows of the old state under the new generation
+    public void recordWrite(Collection<Long> changedUserIds) {
+        List<Long> userIds = changedUserIds.stream().filter(Objects::nonNull).toList();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            changed(userIds);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                changed(userIds);
+            }
+        });
+    }
+
+    // the feed only moves past an event once every seq before it has committed or rolled back, so a write that
+    // commits behind a later one still bumps the generation when it lands; this instance's own writes bump twice
+    void pollSharedWrites() {
+        try {
+            if (seenSeq < 0) {
+                seenSeq = Math.max(0, changeFeed.latest() - STARTUP_LOOKBACK);
+                fencedSeq = seenSeq;
+            }
+            long generation = current().number();
+            // a write this instance counted before the line above has its event at or below latest
+            long latest = changeFeed.latest();
+            long next = seenSeq;
+            Set<Long> userIds = new LinkedHashSet<>();
+            UserFeedPage page;
+            do {
+                page = changeFeed.read(next, READ_LIMIT);
+                next = page.getNextSince();
+                unfencedEvents += page.getEvents().size();
+                for (UserFeedEvent event : page.getEvents()) {
+                    userIds.add(event.getUserId());
+                }
+            } while (page.getEvents().size() == READ_LIMIT);
+            if (next != seenSeq) {
+                seenSeq = next;
+                changed(userIds);
+                generation++;
+            }
+            fence(generation, next >= latest);
+        } catch (RuntimeException e) {
+            // a failed poll must not cancel the schedule, it is retried on the next tick
+            pollFailures.record(e);
+        }
+    }
+
+    // a local write bumping meanwhile moves the generation past the one fenced here, which then fences nothing
+    private void fence(long generation, boolean readEverything) {
+        Fence fenced = fence;
+        if (!readEverything || current().number() != generation || (fenced != null && fenced.generation() == generation)) {
+            return;
+        }
+        fence = new Fence(generation, fencedSeq, seenSeq, unfencedEvents);
+        fencedSeq = seenSeq;
+        unfencedEvents = 0;
+    }
+
+    // the bump comes first: a reader that loaded a row before the write and caches it after the listeners ran still
+    // finds the generation moved when it checks again, and drops what it cached
+    private void changed(Collection<Long> userIds) {
+        bump();
+        if (!userIds.isEmpty()) {
+            for (Consumer<Collection<Long>> listener : listeners) {
+                listener.accept(userIds);
+            }
+        }
+    }
+
+    private void bump() {
+        current.updateAndGet(generation -> generation(generation.number() + 1));
+    }
+
+    private Generation generation(long number) {
+        // HTTP dates have second precision, the ETag tells apart writes within the same second
+        return new Generation(number, Instant.now().truncatedTo(ChronoUnit.SECONDS), "W/\"" + bootId + "-" + number + "\"");
+    }
+
+    @PreDestroy
+    public void close() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.forclearsolution.services.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forclearsolution.models.ExportFormat;
+import com.forclearsolution.models.ExportJob;
+import com.forclearsolution.models.UserField;
+import com.forclearsolution.repositories.UserRepository;
+import com.forclearsolution.services.UserExportService;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+@Service
+public class UserExportServiceImpl implements UserExportService {
+
+    private static final Set<UserField> ALL_FIELDS = Collections.unmodifiableSet(EnumSet.allOf(UserField.class));
+
+    private static final String CHECKPOINT_EXTENSION = ".checkpoint";
+
+    private final UserRepository userRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final Path exportDirectory;
+
+    private final int chunkSize;
+
+    private final int maxRowsPerSecond;
+
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    // a single worker keeps exports from competing with each other for database connections
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public UserExportServiceImpl(UserRepository userRepository, ObjectMapper objectMapper,
+                                 @Value("${exportDirectory}") String exportDirectory,
+                                 @Value("${exportChunkSize}") int chunkSize,
+                                 @Value("${exportMaxRowsPerSecond}") int maxRowsPerSecond) {
+        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+        this.exportDirectory = Paths.get(exportDirectory);
+        this.chunkSize = chunkSize;
+        this.maxRowsPerSecond = maxRowsPerSecond;
+    }
+
+    @Override
+    public synchronized ExportJob startExport(ExportFormat format) {
+        String jobId = UUID.randomUUID().toString();
+        ExportJob job = new ExportJob(jobId, format,
+                exportDirectory.resolve(jobId + "." + format.getFileExtension()).toString());
+        jobs.put(jobId, job);
+        executor.execute(() -> run(job));
+        return job;
+    }
+
+    @Override
+    public synchronized ExportJob resumeExport(String jobId) {
+        ExportJob job = getExport(jobId);
+        if (job.getStatus() != ExportJob.Status.FAILED) {
+            throw new IllegalArgumentException("Only a failed export can be resumed, this one is " + job.getStatus() + ".");
+        }
+
+        job.setStatus(ExportJob.Status.RUNNING);
+        job.setMessage(null);
+        jobs.put(jobId, job);
+        executor.execute(() -> run(job));
+        return job;
+    }
+
+    @Override
+    public ExportJob getExport(String jobId) {
+        // the id ends up in a file name, so only accept what startExport generates
+        try {
+            UUID.fromString(jobId);
+        } catch (IllegalArgumentException e) {
+            throw new EntityNotFoundException("Export job not found: " + jobId);
+        }
+
+        ExportJob job = jobs.get(jobId);
+        if (job != null) {
+            return job;
+        }
+        return loadCheckpoint(jobId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        // interrupted jobs still write their checkpoint, so they can be resumed after a restart
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(ExportJob job) {
+        try {
+            export(job);
+            job.setStatus(ExportJob.Status.COMPLETED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(job, "Export interrupted.");
+        } catch (Exception e) {
+            fail(job, e.getMessage());
+        }
+
+        try {
+            saveCheckpoint(job);
+        } catch (IOException e) {
+            job.setMessage("Could not save checkpoint: " + e.getMessage());
+        }
+    }
+
+    private void fail(ExportJob job, String reason) {
+        job.setMessage("Export stopped after id " + job.getLastId() + ": " + reason);
+        job.setStatus(ExportJob.Status.FAILED);
+    }
+
+    private void export(ExportJob job) throws IOException, InterruptedException {
+        Files.createDirectories(exportDirectory);
+        ExportChunkWriter writer = new ExportChunkWriter(job.getFormat(), objectMapper);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+        long started = System.nanoTime();
+        long rowsThisRun = 0;
+
+        try (FileChannel channel = FileChannel.open(Paths.get(job.getFile()), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // anything past the last checkpoint is a partially written chunk from the previous attempt
+            channel.truncate(job.getBytesWritten());
+            channel.position(job.getBytesWritten());
+            OutputStream channelOut = Channels.newOutputStream(channel);
+
+            while (true) {
+                List<Map<String, Object>> rows = userRepository.findViews(ALL_FIELDS, job.getLastId(), chunkSize);
+                boolean firstChunk = job.getBytesWritten() == 0;
+
+                if (!rows.isEmpty() || firstChunk) {
+                    // every chunk is a complete gzip member, so the file stays readable after each checkpoint
+                    buffer.reset();
+                    try (GZIPOutputStream gzip = new GZIPOutputStream(buffer, 8192)) {
+                        if (firstChunk) {
+                            writer.writeHeader(gzip);
+                        }
+                        writer.writeRows(rows, gzip);
+                    }
+                    buffer.writeTo(channelOut);
+                    channel.force(false);
+
+                    if (!rows.isEmpty()) {
+                        job.setLastId((Long) rows.get(rows.size() - 1).get("id"));
+                        job.setRowsWritten(job.getRowsWritten() + rows.size());
+                    }
+                    job.setBytesWritten(channel.position());
+                    saveCheckpoint(job);
+                }
+
+                if (rows.size() < chunkSize) {
+                    return;
+                }
+                rowsThisRun += rows.size();
+                throttle(started, rowsThisRun);
+            }
+        }
+    }
+
+    private void throttle(long started, long rowsThisRun) throws InterruptedException {
+        long minimumElapsed = rowsThisRun * TimeUnit.SECONDS.toNanos(1) / maxRowsPerSecond;
+        long wait = minimumElapsed - (System.nanoTime() - started);
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private void saveCheckpoint(ExportJob job) throws IOException {
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("format", job.getFormat().name());
+        checkpoint.setProperty("status", job.getStatus().name());
+        checkpoint.setProperty("lastId", Long.toString(job.getLastId()));
+        checkpoint.setProperty("rowsWritten", Long.toString(job.getRowsWritten()));
+        checkpoint.setProperty("bytesWritten", Long.toString(job.getBytesWritten()));
+
+        Path target = exportDirectory.resolve(job.getJobId() + CHECKPOINT_EXTENSION);
+        Path temporary = exportDirectory.resolve(job.getJobId() + CHECKPOINT_EXTENSION + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            checkpoint.store(out, null);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private ExportJob loadCheckpoint(String jobId) {
+        Path path = exportDirectory.resolve(jobId + CHECKPOINT_EXTENSION);
+        if (!Files.exists(path)) {
+            throw new EntityNotFoundException("Export job not found: " + jobId);
+        }
+
+        Properties checkpoint = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            checkpoint.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        ExportFormat format = ExportFormat.valueOf(checkpoint.getProperty("format"));
+        ExportJob job = new ExportJob(jobId, format, exportDirectory.resolve(jobId + "." + format.getFileExtension()).toString());
+        job.setLastId(Long.parseLong(checkpoint.getProperty("lastId")));
+        job.setRowsWritten(Long.parseLong(checkpoint.getProperty("rowsWritten")));
+        job.setBytesWritten(Long.parseLong(checkpoint.getProperty("bytesWritten")));
+
+        ExportJob.Status status = ExportJob.Status.valueOf(checkpoint.getProperty("status"));
+        if (status == ExportJob.Status.RUNNING) {
+            // the process stopped while this job was running
+            fail(job, "Export interrupted.");
+        } else {
+            job.setStatus(status);
+        }
+        return job;
+    }
+}
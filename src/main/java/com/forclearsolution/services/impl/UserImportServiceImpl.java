@@ -0,0 +1,345 @@
+package com.forclearsolution.services.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forclearsolution.models.BatchRowResult;
+import com.forclearsolution.models.ImportJob;
+import com.forclearsolution.models.User;
+import com.forclearsolution.services.UserImportService;
+import com.forclearsolution.services.UserService;
+import com.forclearsolution.validators.UserValidator;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class UserImportServiceImpl implements UserImportService {
+
+    private static final ValidatedChunk END_OF_INPUT = new ValidatedChunk(0, List.of(), new long[0], List.of());
+
+    private final UserService userService;
+
+    private final UserValidator userValidator;
+
+    private final ObjectMapper objectMapper;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Path importDirectory;
+
+    private final int chunkSize;
+
+    private final int parallelism;
+
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(daemonThreads("user-import"));
+
+    @Autowired
+    public UserImportServiceImpl(UserService userService, UserValidator userValidator, ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${importDirectory}") String importDirectory,
+                                 @Value("${importChunkSize}") int chunkSize,
+                                 @Value("${importParallelism}") int parallelism) {
+        this.userService = userService;
+        this.userValidator = userValidator;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.importDirectory = Paths.get(importDirectory).toAbsolutePath().normalize();
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public ImportJob startImport(String file) {
+        Path path = importDirectory.resolve(file).normalize();
+        if (!path.startsWith(importDirectory)) {
+            throw new IllegalArgumentException("The import file must be inside the import directory.");
+        }
+        if (!Files.isRegularFile(path)) {
+            throw new IllegalArgumentException("Import file not found: " + file);
+        }
+
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean csv = name.endsWith(".csv");
+        if (!csv && !name.endsWith(".ndjson") && !name.endsWith(".jsonl")) {
+            throw new IllegalArgumentException("Unsupported import file, use .csv, .ndjson or .jsonl.");
+        }
+
+        String jobId = UUID.randomUUID().toString();
+        ImportJob job = new ImportJob(jobId, path.toString(), importDirectory.resolve(jobId + ".rejected.csv").toString());
+        jobs.put(jobId, job);
+        executor.execute(() -> run(job, csv));
+        return job;
+    }
+
+    @Override
+    public ImportJob getImport(String jobId) {
+        // the id ends up in a file name, so only accept what startImport generates
+        try {
+            UUID.fromString(jobId);
+        } catch (IllegalArgumentException e) {
+            throw new EntityNotFoundException("Import job not found: " + jobId);
+        }
+
+        ImportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new EntityNotFoundException("Import job not found: " + jobId);
+        }
+        return job;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(ImportJob job, boolean csv) {
+        try {
+            importFile(job, csv);
+            job.setStatus(ImportJob.Status.COMPLETED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(job, "Import interrupted.");
+        } catch (ExecutionException e) {
+            fail(job, e.getCause().getMessage());
+        } catch (Exception e) {
+            fail(job, e.getMessage());
+        }
+        job.setFinishedAt(System.currentTimeMillis());
+    }
+
+    private void fail(ImportJob job, String reason) {
+        job.setMessage("Import stopped after " + job.getRowsRead() + " rows: " + reason);
+        job.setStatus(ImportJob.Status.FAILED);
+    }
+
+    // reader -> parallel parse and validation -> this thread inserting chunks in file order;
+    // the pending queue bounds how far the reader can run ahead of the inserts
+    private void importFile(ImportJob job, boolean csv) throws IOException, InterruptedException, ExecutionException {
+        ExecutorService validators = Executors.newFixedThreadPool(parallelism, daemonThreads("user-import-validate"));
+        BlockingQueue<Future<ValidatedChunk>> pending = new ArrayBlockingQueue<>(parallelism * 2);
+        Thread reader = daemonThreads("user-import-read")
+                .newThread(() -> read(Paths.get(job.getFile()), csv, validators, pending));
+
+        try (BufferedWriter rejected = Files.newBufferedWriter(Paths.get(job.getRejectedFile()))) {
+            rejected.write("line,email,reason\n");
+            reader.start();
+
+            while (true) {
+                ValidatedChunk chunk = pending.take().get();
+                if (chunk == END_OF_INPUT) {
+                    return;
+                }
+                write(job, chunk, rejected);
+            }
+        } finally {
+            reader.interrupt();
+            validators.shutdownNow();
+        }
+    }
+
+    private void read(Path file, boolean csv, ExecutorService validators, BlockingQueue<Future<ValidatedChunk>> pending) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ChunkReader chunkReader = new ChunkReader(csv, validators, pending);
+            new ImportLineReader(channel).forEachLine(chunkReader);
+            chunkReader.submit();
+            pending.put(CompletableFuture.completedFuture(END_OF_INPUT));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            try {
+                pending.put(CompletableFuture.failedFuture(e));
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private ValidatedChunk validate(RawChunk raw, ImportRowParser parser) {
+        List<User> users = new ArrayList<>(raw.size);
+        long[] userLines = new long[raw.size];
+        List<RejectedRow> rejected = new ArrayList<>();
+
+        for (int i = 0; i < raw.size; i++) {
+            User user;
+            try {
+                user = parser.parse(raw.data, raw.offsets[i], raw.lengths[i]);
+            } catch (IllegalArgumentException e) {
+                rejected.add(new RejectedRow(raw.lines[i], null, e.getMessage()));
+                continue;
+            }
+
+            List<String> errors = userValidator.validate(user);
+            if (errors.isEmpty()) {
+                userLines[users.size()] = raw.lines[i];
+                users.add(user);
+            } else {
+                rejected.add(new RejectedRow(raw.lines[i], user.getEmail(), String.join(" ", errors)));
+            }
+        }
+        return new ValidatedChunk(raw.size, users, userLines, rejected);
+    }
+
+    private void write(ImportJob job, ValidatedChunk chunk, BufferedWriter rejected) throws IOException {
+        for (RejectedRow row : chunk.rejected()) {
+            writeRejected(rejected, row.line(), row.email(), row.reason());
+        }
+
+        long created = 0;
+        if (!chunk.users().isEmpty()) {
+            List<BatchRowResult> results = userService.createValidatedUsers(chunk.users(), 0);
+            for (int i = 0; i < results.size(); i++) {
+                BatchRowResult result = results.get(i);
+                if (result.getStatus() == BatchRowResult.Status.CREATED) {
+                    created++;
+                } else {
+                    writeRejected(rejected, chunk.userLines()[i], result.getEmail(), result.getMessage());
+                }
+            }
+        }
+        long duplicates = chunk.users().size() - created;
+
+        job.setRowsRead(job.getRowsRead() + chunk.rows());
+        job.setCreated(job.getCreated() + created);
+        job.setDuplicates(job.getDuplicates() + duplicates);
+        job.setRejected(job.getRejected() + chunk.rejected().size());
+        meterRegistry.counter("users.import.rows", "outcome", "created").increment(created);
+        meterRegistry.counter("users.import.rows", "outcome", "duplicate").increment(duplicates);
+        meterRegistry.counter("users.import.rows", "outcome", "rejected").increment(chunk.rejected().size());
+    }
+
+    private static void writeRejected(BufferedWriter out, long line, String email, String reason) throws IOException {
+        out.write(Long.toString(line));
+        out.write(',');
+        out.write(quote(email));
+        out.write(',');
+        out.write(quote(reason));
+        out.write('\n');
+    }
+
+    private static String quote(String value) {
+        return value == null ? "" : '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private class ChunkReader implements ImportLineReader.LineConsumer {
+
+        private final ExecutorService validators;
+
+        private final BlockingQueue<Future<ValidatedChunk>> pending;
+
+        private ImportRowParser parser;
+
+        private RawChunk chunk = new RawChunk(chunkSize);
+
+        private long line;
+
+        ChunkReader(boolean csv, ExecutorService validators, BlockingQueue<Future<ValidatedChunk>> pending) {
+            this.parser = csv ? null : ImportRowParser.ndjson(objectMapper);
+            this.validators = validators;
+            this.pending = pending;
+        }
+
+        @Override
+        public void accept(byte[] data, int offset, int length) throws InterruptedException {
+            line++;
+            if (length == 0) {
+                return;
+            }
+            if (parser == null) {
+                parser = ImportRowParser.csv(data, offset, length);
+                return;
+            }
+
+            chunk.add(line, data, offset, length);
+            if (chunk.size == chunkSize) {
+                submit();
+            }
+        }
+
+        void submit() throws InterruptedException {
+            if (chunk.size == 0) {
+                return;
+            }
+            RawChunk submitted = chunk;
+            ImportRowParser chunkParser = parser;
+            pending.put(validators.submit(() -> validate(submitted, chunkParser)));
+            chunk = new RawChunk(chunkSize);
+        }
+    }
+
+    // the raw bytes of up to chunkSize lines, copied out of the read buffer
+    private static class RawChunk {
+
+        private byte[] data = new byte[64 * 1024];
+
+        private int used;
+
+        private final int[] offsets;
+
+        private final int[] lengths;
+
+        private final long[] lines;
+
+        private int size;
+
+        RawChunk(int capacity) {
+            offsets = new int[capacity];
+            lengths = new int[capacity];
+            lines = new long[capacity];
+        }
+
+        void add(long line, byte[] source, int offset, int length) {
+            if (used + length > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, used + length));
+            }
+            System.arraycopy(source, offset, data, used, length);
+            offsets[size] = used;
+            lengths[size] = length;
+            lines[size] = line;
+            used += length;
+            size++;
+        }
+    }
+
+    private record ValidatedChunk(int rows, List<User> users, long[] userLines, List<RejectedRow> rejected) {
+    }
+
+    private record RejectedRow(long line, String email, String reason) {
+    }
+}
@@ -0,0 +1,84 @@
+package com.forclearsolution.services.impl;
+
+import com.forclearsolution.models.User;
+import com.forclearsolution.models.UserResult;
+import com.forclearsolution.repositories.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Locale;
+
+// The insert transactions of UserServiceImpl, on a bean of their own so that registration can run them without
+// holding a transaction itself. Going through the proxy also puts the repository permit in front of the connection.
+@Component
+public class UserInserter {
+
+    private static final String EMAIL_CONSTRAINT = "ux_users_email";
+
+    private final UserRepository userRepository;
+
+    private final EntityManager entityManager;
+
+    private final UserChangeFeed changeFeed;
+
+    private final UserChangeTracker changeTracker;
+
+    private final UserAuditLog auditLog;
+
+    @Autowired
+    public UserInserter(UserRepository userRepository, EntityManager entityManager, UserChangeFeed changeFeed,
+                        UserChangeTracker changeTracker, UserAuditLog auditLog) {
+        this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.changeFeed = changeFeed;
+        this.changeTracker = changeTracker;
+        this.auditLog = auditLog;
+    }
+
+    // the outbox event commits with the user
+    @Transactional
+    public UserResult insert(User user) {
+        User savedUser;
+        try {
+            savedUser = userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            if (!isEmailConflict(e)) {
+                throw e;
+            }
+            UserServiceImpl.rollbackOnly();
+            return UserResult.duplicate();
+        }
+        changeFeed.appendCreated(savedUser);
+        changeTracker.recordWrite(savedUser.getId());
+        auditLog.recordCreated(savedUser);
+        return UserResult.ok(savedUser);
+    }
+
+    // all or nothing, a violation rolls back the whole chunk
+    @Transactional
+    public void insertAll(List<User> users) {
+        // ids come from the pooled sequence, so these inserts go out as JDBC batches on flush
+        userRepository.saveAll(users);
+        userRepository.flush();
+        changeFeed.appendCreated(users);
+        changeTracker.recordWrite(users.stream().map(User::getId).toList());
+        auditLog.recordCreated(users);
+        users.forEach(entityManager::detach);
+    }
+
+    // only the unique index on email means the address is taken, any other violation is a failure to surface
+    static boolean isEmailConflict(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null) {
+                return violation.getConstraintName().toLowerCase(Locale.ROOT).contains(EMAIL_CONSTRAINT);
+            }
+        }
+        String message = e.getMostSpecificCause().getMessage();
+        return message != null && message.toLowerCase(Locale.ROOT).contains(EMAIL_CONSTRAINT);
+    }
+}
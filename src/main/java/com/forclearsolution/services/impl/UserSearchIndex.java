@@ -0,0 +1,346 @@
+package com.forclearsolution.services.impl;
+
+import com.forclearsolution.config.ReplicaDataSource;
+import com.forclearsolution.models.UserFeedEvent;
+import com.forclearsolution.models.UserFeedPage;
+import com.forclearsolution.models.UserField;
+import com.forclearsolution.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Lucene index over name, email and address, kept on local disk next to the application. It follows the
+// user_outbox change feed, so writes of every instance reach it: a commit of this instance at once, others
+// on the next poll. The seq it has applied is committed with the index, every few seconds and on shutdown,
+// and a restart catches up from there unless the feed has purged events after it.
+@Component
+public class UserSearchIndex {
+
+    private static final String ID = "id";
+
+    private static final String ID_KEY = "idKey";
+
+    private static final String TEXT = "text";
+
+    private static final String EMAIL = "email";
+
+    private static final Sort BY_ID = new Sort(new SortField(ID, SortField.Type.LONG));
+
+    private static final Set<UserField> INDEXED_FIELDS = EnumSet.of(UserField.ID, UserField.EMAIL, UserField.FIRST_NAME,
+            UserField.LAST_NAME, UserField.ADDRESS);
+
+    private static final int REBUILD_CHUNK_SIZE = 1000;
+
+    private static final int READ_LIMIT = 1000;
+
+    // transactions still in flight when a rebuild starts hold seqs just below the latest one
+    private static final int REBUILD_LOOKBACK = 1000;
+
+    private static final String APPLIED_SEQ = "outboxSeq";
+
+    private final UserRepository userRepository;
+
+    private final UserChangeFeed changeFeed;
+
+    private final long pollMillis;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    private final IndexWriter writer;
+
+    private final SearcherManager searcherManager;
+
+    // loading, catching up and committing all run on this one thread
+    private final ScheduledExecutorService indexer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-search-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean catchUpScheduled = new AtomicBoolean();
+
+    private final TaskFailures pollFailures;
+
+    private final TaskFailures commitFailures;
+
+    private volatile boolean loaded;
+
+    // the last feed seq whose change is in the index, -1 until loaded
+    private long appliedSeq = -1;
+
+    @Autowired
+    public UserSearchIndex(UserRepository userRepository, UserChangeFeed changeFeed, UserChangeTracker changeTracker,
+                           MeterRegistry meterRegistry,
+                           @Value("${searchIndexDirectory}") String directory,
+                           @Value("${changeFeedPollMillis}") long pollMillis) throws IOException {
+        this.userRepository = userRepository;
+        this.changeFeed = changeFeed;
+        this.pollMillis = pollMillis;
+        this.pollFailures = new TaskFailures(UserSearchIndex.class, "search-index-poll", meterRegistry);
+        this.commitFailures = new TaskFailures(UserSearchIndex.class, "search-index-commit", meterRegistry);
+        IndexWriterConfig config = new IndexWriterConfig(analyzer)
+                // documents sorted by id let a search stop once it has a page of matches per segment
+                .setIndexSort(BY_ID);
+        this.writer = new IndexWriter(FSDirectory.open(Paths.get(directory)), config);
+        this.searcherManager = new SearcherManager(writer, null);
+        // a commit of this instance does not wait for the next poll
+        changeTracker.onWrite(ids -> scheduleCatchUp());
+        indexer.scheduleWithFixedDelay(this::commit, 5, 5, TimeUnit.SECONDS);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        indexer.scheduleWithFixedDelay(this::poll, 0, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll() {
+        try {
+            if (!loaded) {
+                start();
+            }
+            catchUp();
+        } catch (RuntimeException e) {
+            // a failed poll must not cancel the schedule, it is retried on the next tick
+            pollFailures.record(e);
+        }
+    }
+
+    // the feed still holding the event right after the applied seq means none was purged in between; otherwise,
+    // or when the index has never been committed, it is rebuilt from the table
+    synchronized void start() {
+        long stored = storedSeq();
+        long oldest = changeFeed.oldest();
+        if (stored >= 0 && oldest > 0 && oldest <= stored + 1) {
+            appliedSeq = stored;
+        } else {
+            rebuild();
+        }
+        loaded = true;
+    }
+
+    // replays the feed from a little before the latest seq, so a write the scan missed is applied once it commits
+    public synchronized void rebuild() {
+        try {
+            long from = Math.max(0, changeFeed.latest() - REBUILD_LOOKBACK);
+            writer.deleteAll();
+            long afterId = 0;
+            List<Map<String, Object>> rows;
+            do {
+                rows = userRepository.findViews(INDEXED_FIELDS, afterId, REBUILD_CHUNK_SIZE);
+                for (Map<String, Object> row : rows) {
+                    afterId = (Long) row.get("id");
+                    writer.updateDocument(new Term(ID_KEY, Long.toString(afterId)), document(afterId,
+                            (String) row.get("email"), (String) row.get("firstName"), (String) row.get("lastName"),
+                            (String) row.get("address")));
+                }
+            } while (rows.size() == REBUILD_CHUNK_SIZE);
+            applied(from);
+            writer.commit();
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // only the ids of the changed users are taken from the events and their current rows read again, so replaying
+    // an event twice or behind a later one leaves the same document behind
+    public synchronized void catchUp() {
+        try {
+            long next = appliedSeq;
+            UserFeedPage page;
+            do {
+                page = changeFeed.read(next, READ_LIMIT);
+                Set<Long> ids = new LinkedHashSet<>();
+                for (UserFeedEvent event : page.getEvents()) {
+                    ids.add(event.getUserId());
+                }
+                reindex(ids);
+                next = page.getNextSince();
+            } while (page.getEvents().size() == READ_LIMIT);
+            if (next != appliedSeq) {
+                applied(next);
+                searcherManager.maybeRefresh();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void reindex(Set<Long> ids) throws IOException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        // a replica that has not caught up with the event would index the row as it was before
+        List<Map<String, Object>> rows = ReplicaDataSource.onPrimary(() -> userRepository.findViewsByIds(INDEXED_FIELDS, ids));
+        Set<Long> deleted = new LinkedHashSet<>(ids);
+        for (Map<String, Object> row : rows) {
+            Long id = (Long) row.get("id");
+            deleted.remove(id);
+            writer.updateDocument(new Term(ID_KEY, id.toString()), document(id, (String) row.get("email"),
+                    (String) row.get("firstName"), (String) row.get("lastName"), (String) row.get("address")));
+        }
+        for (Long id : deleted) {
+            writer.deleteDocuments(new Term(ID_KEY, id.toString()));
+        }
+    }
+
+    // a burst of commits collapses into one catch up
+    private void scheduleCatchUp() {
+        if (loaded && catchUpScheduled.compareAndSet(false, true)) {
+            indexer.execute(() -> {
+                catchUpScheduled.set(false);
+                poll();
+            });
+        }
+    }
+
+    private void applied(long seq) {
+        appliedSeq = seq;
+        writer.setLiveCommitData(Map.of(APPLIED_SEQ, Long.toString(seq)).entrySet());
+    }
+
+    private long storedSeq() {
+        Iterable<Map.Entry<String, String>> commitData = writer.getLiveCommitData();
+        if (commitData != null) {
+            for (Map.Entry<String, String> entry : commitData) {
+                if (entry.getKey().equals(APPLIED_SEQ)) {
+                    return Long.parseLong(entry.getValue());
+                }
+            }
+        }
+        return -1;
+    }
+
+    // every word of the query must be the start of a word in a name or the address, or the start of the email
+    public List<Long> search(String query, long afterId, int limit) {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (String word : query.trim().toLowerCase(Locale.ROOT).split("\\s+")) {
+            BooleanQuery.Builder words = new BooleanQuery.Builder();
+            for (String token : tokens(word)) {
+                words.add(new PrefixQuery(new Term(TEXT, token)), BooleanClause.Occur.MUST);
+            }
+
+            builder.add(new BooleanQuery.Builder()
+                    .add(new PrefixQuery(new Term(EMAIL, word)), BooleanClause.Occur.SHOULD)
+                    .add(words.build(), BooleanClause.Occur.SHOULD)
+                    .build(), BooleanClause.Occur.MUST);
+        }
+        builder.add(LongPoint.newRangeQuery(ID, afterId + 1, Long.MAX_VALUE), BooleanClause.Occur.FILTER);
+
+        try {
+            searcherManager.maybeRefresh();
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                ScoreDoc[] hits = searcher.search(builder.build(), limit, BY_ID, false).scoreDocs;
+                List<Long> ids = new ArrayList<>(hits.length);
+                for (ScoreDoc hit : hits) {
+                    ids.add((Long) ((FieldDoc) hit).fields[0]);
+                }
+                return ids;
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        // no interrupt, Lucene gives up its write lock when a thread is interrupted inside its file I/O; the task
+        // running now is let finish and the scheduled ones are dropped
+        indexer.shutdown();
+        try {
+            indexer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        searcherManager.close();
+        writer.close();
+    }
+
+    private void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        } catch (IOException | RuntimeException e) {
+            // retried on the next tick, the writer keeps the changes until then
+            commitFailures.record(e);
+        }
+    }
+
+    private Document document(Long id, String email, String firstName, String lastName, String address) {
+        Document document = new Document();
+        document.add(new StringField(ID_KEY, id.toString(), Field.Store.NO));
+        document.add(new LongPoint(ID, id));
+        document.add(new NumericDocValuesField(ID, id));
+        if (email != null) {
+            document.add(new StringField(EMAIL, email.toLowerCase(Locale.ROOT), Field.Store.NO));
+        }
+        document.add(new TextField(TEXT, String.join(" ", nonNull(firstName), nonNull(lastName), nonNull(email),
+                nonNull(address)), Field.Store.NO));
+        return document;
+    }
+
+    private List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        try (TokenStream stream = analyzer.tokenStream(TEXT, text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                tokens.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return tokens;
+    }
+
+    private static String nonNull(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -1,172 +1,584 @@
 package com.forclearsolution.services.impl;
 
+import com.forclearsolution.exceptions.DateOfBirthException;
+import com.forclearsolution.models.BatchRowResult;
+import com.forclearsolution.models.BirthDateCursor;
 import com.forclearsolution.models.User;
+import com.forclearsolution.models.UserChange;
+import com.forclearsolution.models.UserFeedPage;
+import com.forclearsolution.models.UserField;
+import com.forclearsolution.models.UserPage;
+import com.forclearsolution.models.UserResult;
 import com.forclearsolution.repositories.UserRepository;
 import com.forclearsolution.services.UserService;
+import com.forclearsolution.validators.UserValidator;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
-import java.time.Period;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Service
+@Timed("users.service")
 public class UserServiceImpl implements UserService {
 
-    @Value("${minAgeForRegistration}")
-    private int minAgeForRegistration;
+    public static final String USERS_CACHE = "users";
+
+    public static final String USER_PAGES_CACHE = "userPages";
 
     private final UserRepository userRepository;
 
+    private final EntityManager entityManager;
+
+    private final UserValidator userValidator;
+
+    private final Cache usersCache;
+
+    private final Cache userPagesCache;
+
+    private final MeterRegistry meterRegistry;
+
+    private final EmailFingerprintIndex emailIndex;
+
+    private final UserSearchIndex searchIndex;
+
+    private final UserChangeTracker changeTracker;
+
+    private final UserAuditLog auditLog;
+
+    private final UserChangeFeed changeFeed;
+
+    private final UserInserter inserter;
+
+    private final UserCacheLoader cacheLoader;
+
+    private final ConcurrentMap<String, CompletableFuture<UserResult>> registrations = new ConcurrentHashMap<>();
+
+    private final long registrationWaitMillis;
+
     @Autowired
-    public UserServiceImpl(UserRepository userRepository) {
+    public UserServiceImpl(UserRepository userRepository, EntityManager entityManager, UserValidator userValidator,
+                           CacheManager cacheManager, MeterRegistry meterRegistry, EmailFingerprintIndex emailIndex,
+                           UserSearchIndex searchIndex, UserChangeTracker changeTracker, UserAuditLog auditLog,
+                           UserChangeFeed changeFeed, UserInserter inserter, UserCacheLoader cacheLoader,
+                           @Value("${registrationWaitMillis}") long registrationWaitMillis) {
         this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.userValidator = userValidator;
+        this.usersCache = cacheManager.getCache(USERS_CACHE);
+        this.userPagesCache = cacheManager.getCache(USER_PAGES_CACHE);
+        this.meterRegistry = meterRegistry;
+        this.emailIndex = emailIndex;
+        this.searchIndex = searchIndex;
+        this.changeTracker = changeTracker;
+        this.auditLog = auditLog;
+        this.changeFeed = changeFeed;
+        this.inserter = inserter;
+        this.cacheLoader = cacheLoader;
+        this.registrationWaitMillis = registrationWaitMillis;
+        // writes of this instance and of the others, the latter one outbox poll after they commit
+        changeTracker.onWrite(ids -> ids.forEach(usersCache::evict));
     }
 
     @Override
     public User createUser(User user) {
+        return unwrap(tryCreateUser(user));
+    }
+
+    // registrations of the same email on this instance run one at a time; whoever waited on a registration that
+    // committed or hit the unique index answers with a duplicate without touching the database
+    @Override
+    public UserResult tryCreateUser(User user) {
+
+        List<String> errors = userValidator.validate(user);
+        if (!errors.isEmpty()) {
+            recordValidationFailures(errors);
+            return UserResult.invalid(errors);
+        }
+
+        String email = normalizeEmail(user.getEmail());
+        while (true) {
+            CompletableFuture<UserResult> registration = new CompletableFuture<>();
+            CompletableFuture<UserResult> running = registrations.putIfAbsent(email, registration);
+            if (running == null) {
+                UserResult result = null;
+                try {
+                    result = insertUser(user);
+                    return result;
+                } finally {
+                    registrations.remove(email, registration);
+                    registration.complete(result);
+                }
+            }
+            // null when it failed with an exception, then the email is still free to try; the wait is bounded, so a
+            // registration stuck ahead, for instance on a connection, does not hold every retry of the email with it
+            UserResult outcome;
+            try {
+                outcome = running.copy().orTimeout(registrationWaitMillis, TimeUnit.MILLISECONDS).join();
+            } catch (CompletionException e) {
+                return UserResult.registrationInProgress();
+            }
+            if (outcome != null && (outcome.isOk() || outcome.getStatus() == UserResult.Status.DUPLICATE)) {
+                return UserResult.duplicate();
+            }
+        }
+    }
+
+    // insert first and let the unique index on email decide, a lookup before the insert would only race with it;
+    // nothing waiting on the registration holds a connection meanwhile
+    private UserResult insertUser(User user) {
+        // ids always come from the sequence, a client-supplied one must not turn the insert into a merge
+        user.setId(null);
+        UserResult result = inserter.insert(user);
+        if (result.isOk()) {
+            User savedUser = result.getUser();
+            emailIndex.add(savedUser.getEmail());
+        }
+        return result;
+    }
+
+    // the unique index compares emails without regard to case or surrounding blanks, so must the single flight
+    private static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public List<BatchRowResult> createUsers(List<User> users, int firstIndex) {
+
+        BatchRowResult[] results = new BatchRowResult[users.size()];
+
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            List<String> errors = userValidator.validate(user);
+            if (!errors.isEmpty()) {
+                recordValidationFailures(errors);
+                results[i] = new BatchRowResult(firstIndex + i, user.getEmail(), BatchRowResult.Status.INVALID, null, String.join(" ", errors));
+            }
+        }
 
-        Optional<User> existingUserOptional = userRepository.findByEmail(user.getEmail());
-        if (existingUserOptional.isPresent()) {
-            throw new IllegalArgumentException("This user already exists!");
-        } else if (!validateUserAge(user)) {
-            throw new IllegalArgumentException("Unknown error");
+        return insertUniqueUsers(users, firstIndex, results);
+    }
+
+    @Override
+    public List<BatchRowResult> createValidatedUsers(List<User> users, int firstIndex) {
+        return insertUniqueUsers(users, firstIndex, new BatchRowResult[users.size()]);
+    }
+
+    // inserts every user that has no result yet and is not a duplicate, within the batch or of an existing row;
+    // emails are compared the way the unique index compares them
+    private List<BatchRowResult> insertUniqueUsers(List<User> users, int firstIndex, BatchRowResult[] results) {
+
+        Map<String, Integer> candidates = new LinkedHashMap<>();
+
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            if (results[i] == null && candidates.putIfAbsent(normalizeEmail(user.getEmail()), i) != null) {
+                results[i] = new BatchRowResult(firstIndex + i, user.getEmail(), BatchRowResult.Status.DUPLICATE, null, "Duplicate email in batch.");
+            }
         }
-        return userRepository.save(user);
+
+        List<String> possiblyExisting = new ArrayList<>();
+        for (String email : candidates.keySet()) {
+            if (emailIndex.mightContain(email)) {
+                possiblyExisting.add(email);
+            }
+        }
+
+        if (!possiblyExisting.isEmpty()) {
+            for (String email : userRepository.findExistingEmails(possiblyExisting)) {
+                Integer i = candidates.remove(normalizeEmail(email));
+                if (i != null) {
+                    results[i] = new BatchRowResult(firstIndex + i, users.get(i).getEmail(), BatchRowResult.Status.DUPLICATE, null, "This user already exists!");
+                }
+            }
+        }
+
+        List<User> newUsers = new ArrayList<>(candidates.size());
+        for (Integer i : candidates.values()) {
+            User user = users.get(i);
+            user.setId(null);
+            newUsers.add(user);
+        }
+        if (newUsers.isEmpty()) {
+            return Arrays.asList(results);
+        }
+
+        try {
+            inserter.insertAll(newUsers);
+        } catch (DataIntegrityViolationException e) {
+            if (!UserInserter.isEmailConflict(e)) {
+                throw e;
+            }
+            // an email was taken after the check above, or by a row the check could not see; the chunk rolled
+            // back as a whole, so each row is inserted on its own to find which ones the unique index rejects
+            for (Integer i : candidates.values()) {
+                User user = users.get(i);
+                user.setVersion(null);
+                UserResult result = insertUser(user);
+                results[i] = result.isOk()
+                        ? new BatchRowResult(firstIndex + i, user.getEmail(), BatchRowResult.Status.CREATED, result.getUser().getId(), null)
+                        : new BatchRowResult(firstIndex + i, user.getEmail(), BatchRowResult.Status.DUPLICATE, null, result.getMessage());
+            }
+            return Arrays.asList(results);
+        }
+
+        for (Integer i : candidates.values()) {
+            User user = users.get(i);
+            results[i] = new BatchRowResult(firstIndex + i, user.getEmail(), BatchRowResult.Status.CREATED, user.getId(), null);
+            emailIndex.add(user.getEmail());
+        }
+
+        return Arrays.asList(results);
     }
 
     @Override
     public User getUserById(Long id) {
-        return userRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("User not found with id " + id));
+        return findUserById(id).orElseThrow(() -> new EntityNotFoundException("User not found with id " + id));
+    }
+
+    @Override
+    public Optional<User> findUserById(Long id) {
+        User cachedUser = usersCache.get(id, User.class);
+        if (cachedUser != null) {
+            return Optional.of(cachedUser);
+        }
+
+        long generation = changeTracker.current().number();
+        UserCacheLoader.Load<Optional<User>> load = cacheLoader.load(generation, () -> userRepository.findById(id));
+        Optional<User> user = load.value();
+        if (!load.cacheable()) {
+            return user;
+        }
+        user.ifPresent(found -> {
+            usersCache.put(id, found);
+            // a write that committed after the row was read may have evicted before the put; its bump is visible by now
+            if (changeTracker.current().number() != generation) {
+                usersCache.evict(id);
+            }
+        });
+        return user;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> listUsers(Long after, int limit) {
+        return userRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0L : after, Limit.of(limit));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> listUserViews(Long after, int limit, Set<UserField> fields) {
+        long afterId = after == null ? 0L : after;
+        return cachedPage(List.of("list", afterId, limit, fields),
+                () -> userRepository.findViews(withCursorFields(fields, UserField.ID), afterId, limit));
     }
 
     @Override
-    public List<User> listUsers() {
-        return userRepository.findAll();
+    @Transactional(readOnly = true)
+    public UserPage<Long> searchUsers(String query, Long after, int limit, Set<UserField> fields) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query cannot be empty.");
+        }
+
+        List<Long> ids = searchIndex.search(query, after == null ? 0L : after, limit);
+        if (ids.isEmpty()) {
+            return new UserPage<>(Collections.emptyList(), null);
+        }
+
+        // the index decides which users match and in what order, the database supplies their current data
+        Map<Long, Map<String, Object>> viewsById = new HashMap<>();
+        for (Map<String, Object> view : userRepository.findViewsByIds(withCursorFields(fields, UserField.ID), ids)) {
+            viewsById.put((Long) view.get("id"), view);
+        }
+        List<Map<String, Object>> views = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Map<String, Object> view = viewsById.get(id);
+            if (view != null) {
+                views.add(view);
+            }
+        }
+        // the cursor follows the index hits, a hit whose row is gone by now must not end the pages early
+        return new UserPage<>(views, ids.size() == limit ? ids.get(ids.size() - 1) : null);
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public void streamUsers(Consumer<User> action) {
+        try (Stream<User> users = userRepository.streamAll()) {
+            users.forEach(user -> {
+                action.accept(user);
+                // keep the persistence context from growing with the table
+                entityManager.detach(user);
+            });
+        }
+    }
+
+    @Override
+    @Transactional
     public void deleteUser(Long id) {
-        User user = userRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("User not found with id " + id));
-        userRepository.delete(user);
+        deleteUser(id, null);
     }
 
     @Override
+    @Transactional
+    public void deleteUser(Long id, Long expectedVersion) {
+        UserResult result = tryDeleteUser(id, expectedVersion);
+        if (result.getStatus() == UserResult.Status.NOT_FOUND) {
+            throw new EntityNotFoundException("User not found with id " + id);
+        }
+        unwrap(result);
+    }
+
+    // the user of an ok result is the deleted row
+    @Override
+    @Transactional
+    public UserResult tryDeleteUser(Long id, Long expectedVersion) {
+        // the audit log and the email index need the deleted values. When the users cache holds the user, a single
+        // delete guarded by the cached version removes exactly that row; otherwise, or when a write since then makes
+        // it miss, the row is read under a lock first so no other write can land between the read and the delete
+        User cached = usersCache.get(id, User.class);
+        if (cached != null && (expectedVersion == null || expectedVersion.equals(cached.getVersion()))
+                && userRepository.deleteUserByIdAndVersion(id, cached.getVersion()) > 0) {
+            return deleted(cached);
+        }
+
+        Optional<User> locked = userRepository.lockById(id);
+        if (locked.isEmpty()) {
+            return UserResult.notFound(id);
+        }
+        User before = locked.get();
+        entityManager.detach(before);
+        if (expectedVersion != null && !expectedVersion.equals(before.getVersion())) {
+            return UserResult.stale(id);
+        }
+        userRepository.deleteUserById(id);
+        return deleted(before);
+    }
+
+    private UserResult deleted(User before) {
+        changeFeed.appendDeleted(before.getId());
+        changeTracker.recordWrite(before.getId());
+        auditLog.recordDeleted(before.getId(), before);
+        emailIndex.remove(before.getEmail());
+        return UserResult.ok(before);
+    }
+
+    @Override
+    @Transactional
     public User updateUser(User user, Long id) {
+        return updateUser(user, id, null);
+    }
+
+    @Override
+    @Transactional
+    public User updateUser(User user, Long id, Long expectedVersion) {
+        return unwrap(tryUpdateUser(user, id, expectedVersion));
+    }
+
+    @Override
+    @Transactional
+    public UserResult tryUpdateUser(User user, Long id, Long expectedVersion) {
 
         Optional<User> existingUser = userRepository.findById(id);
+        if (existingUser.isEmpty()) {
+            return UserResult.notFound(id);
+        }
 
-        if (existingUser.isPresent()) {
-            User updateUser = existingUser.get();
-            Optional<User> existingUserOptional = userRepository.findByEmail(user.getEmail());
-            if (existingUserOptional.isPresent() && !Objects.equals(existingUserOptional.get().getId(), existingUser.get().getId())) {
-                throw new IllegalArgumentException("This user already exists!");
-            }
+        User updateUser = existingUser.get();
+        if (expectedVersion != null && !expectedVersion.equals(updateUser.getVersion())) {
+            return UserResult.stale(id);
+        }
+        String previousEmail = updateUser.getEmail();
+        User before = new User(updateUser.getId(), updateUser.getEmail(), updateUser.getFirstName(), updateUser.getLastName(),
+                updateUser.getDateOfBirth(), updateUser.getAddress(), updateUser.getPhoneNumber());
+        if (user.getEmail() != null) {
             updateUser.setEmail(user.getEmail());
+        }
+        if (user.getFirstName() != null) {
             updateUser.setFirstName(user.getFirstName());
+        }
+        if (user.getLastName() != null) {
             updateUser.setLastName(user.getLastName());
+        }
+        if (user.getDateOfBirth() != null) {
             updateUser.setDateOfBirth(user.getDateOfBirth());
+        }
+        if (user.getAddress() != null) {
             updateUser.setAddress(user.getAddress());
+        }
+        if (user.getPhoneNumber() != null) {
             updateUser.setPhoneNumber(user.getPhoneNumber());
+        }
 
-            if (validateUserAge(updateUser)) {
-                return userRepository.save(updateUser);
-            } else {
-                throw new IllegalArgumentException("Check the entered data.");
-            }
-
-        } else {
-            throw new IllegalArgumentException("User not found with id: " + id);
+        List<String> errors = userValidator.validate(updateUser);
+        if (!errors.isEmpty()) {
+            recordValidationFailures(errors);
+            rollbackOnly();
+            return UserResult.invalid(errors);
         }
-    }
 
-    @Override
-    public List<User> getUsersInDateRange(LocalDate startDate, LocalDate endDate) {
-        if (validateDateOfBirth(startDate) || validateDateOfBirth(endDate)) {
-            throw new IllegalArgumentException("Invalid date of birth format. Please use YYYY-MM-DD format.");
+        User savedUser;
+        try {
+            savedUser = userRepository.saveAndFlush(updateUser);
+        } catch (DataIntegrityViolationException e) {
+            if (!UserInserter.isEmailConflict(e)) {
+                throw e;
+            }
+            rollbackOnly();
+            return UserResult.duplicate();
+        } catch (OptimisticLockingFailureException e) {
+            // an update that committed after the read above, the version check on flush is the last word
+            rollbackOnly();
+            return UserResult.stale(id);
+        }
+        changeFeed.appendUpdated(savedUser);
+        // a change of case only keeps the fingerprint, removing the old one would drop the user's own entry
+        if (previousEmail != null && !normalizeEmail(previousEmail).equals(normalizeEmail(savedUser.getEmail()))) {
+            emailIndex.remove(previousEmail);
+            emailIndex.add(savedUser.getEmail());
         }
-        return userRepository.findByDateOfBirthBetween(startDate, endDate);
+        // evicts the cached row after commit, a read between an earlier evict and the commit would cache it again
+        changeTracker.recordWrite(id);
+        auditLog.recordUpdated(before, savedUser);
+        return UserResult.ok(savedUser);
     }
 
-    public boolean validateUserAge(User user) {
-
-        if (user.getFirstName() == null || user.getFirstName().isEmpty()) {
-            throw new IllegalArgumentException("First name cannot be empty.");
-        } else if (user.getLastName() == null || user.getLastName().isEmpty()) {
-            throw new IllegalArgumentException("Last name cannot be empty.");
-        } else if (user.getEmail() == null || user.getEmail().isEmpty()) {
-            throw new IllegalArgumentException("Email cannot be empty.");
-        } else if (!validateEmail(user.getEmail())) {
-            throw new IllegalArgumentException("Invalid email format.");
-        } else if (!validatePhoneNumber(user.getPhoneNumber())) {
-            throw new IllegalArgumentException("Invalid phone number format.");
+    // returning a result instead of throwing would otherwise commit the half-applied write
+    static void rollbackOnly() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
         }
+    }
 
-        LocalDate dateOfBirth = user.getDateOfBirth();
-        if (validateDateOfBirth(dateOfBirth)) {
-            throw new IllegalArgumentException("Invalid date of birth format. Please use YYYY-MM-DD format.");
+    // the throwing variants keep their original contract for callers that do not branch on results
+    private static User unwrap(UserResult result) {
+        if (result.getStatus() == UserResult.Status.STALE) {
+            throw new OptimisticLockingFailureException(result.getMessage());
         }
-
-        LocalDate today = LocalDate.now();
-        if (dateOfBirth.isAfter(today)) {
-            throw new IllegalArgumentException("The date of birth cannot be in the future.");
+        if (!result.isOk()) {
+            throw new IllegalArgumentException(result.getMessage());
         }
+        return result.getUser();
+    }
 
-        Period period = Period.between(dateOfBirth, today);
-        if (period.getYears() < minAgeForRegistration) {
-            throw new IllegalArgumentException("To register, the user must be over " + minAgeForRegistration + " years old.");
-        }
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserChange> getUserHistory(Long id, Long after, int limit) {
+        return auditLog.history(id, after, limit);
+    }
 
-        return true;
+    // no transaction, a long poll must not hold a connection while it waits
+    @Override
+    public CompletableFuture<UserFeedPage> getChanges(long since, int limit, long waitMillis) {
+        return changeFeed.poll(since, limit, waitMillis);
     }
 
-    private boolean validateEmail(String email) {
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> getUsersInDateRange(LocalDate startDate, LocalDate endDate, BirthDateCursor after, int limit) {
+        validateDateOfBirth(startDate);
+        validateDateOfBirth(endDate);
+        if (after == null) {
+            return userRepository.findByDateOfBirthBetweenOrderByDateOfBirthAscIdAsc(startDate, endDate, Limit.of(limit));
+        }
+        return userRepository.findByDateOfBirthBetweenAfter(startDate, endDate, after.getDateOfBirth(), after.getId(), Limit.of(limit));
+    }
 
-        String regex = "^[\\w-\\.]+@([\\w-]+\\.)+[\\w-]{2,}$";
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(email);
+    @Override
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getUserViewsInDateRange(LocalDate startDate, LocalDate endDate, BirthDateCursor after,
+                                                             int limit, Set<UserField> fields) {
+        validateDateOfBirth(startDate);
+        validateDateOfBirth(endDate);
+        return cachedPage(Arrays.asList("range", startDate, endDate, after, limit, fields),
+                () -> userRepository.findViewsByDateOfBirthBetween(
+                        withCursorFields(fields, UserField.DATE_OF_BIRTH, UserField.ID), startDate, endDate, after, limit));
+    }
 
-        return matcher.matches();
+    @Override
+    @Transactional(readOnly = true)
+    public long countUsersInDateRange(LocalDate startDate, LocalDate endDate) {
+        validateDateOfBirth(startDate);
+        validateDateOfBirth(endDate);
+        return cachedPage(List.of("count", startDate, endDate), () -> userRepository.countByDateOfBirthBetween(startDate, endDate));
     }
 
-    private boolean validatePhoneNumber(String phoneNumber) {
+    // keyed by the write generation, so any committed write makes earlier entries unreachable; a page read from a
+    // replica that has not applied every write of that generation yet is not kept under it
+    @SuppressWarnings("unchecked")
+    private <T> T cachedPage(List<Object> query, Supplier<T> loader) {
+        long generation = changeTracker.current().number();
+        List<Object> key = List.of(generation, query);
+        Cache.ValueWrapper cached = userPagesCache.get(key);
+        if (cached != null) {
+            return (T) cached.get();
+        }
+        UserCacheLoader.Load<T> load = cacheLoader.load(generation, loader);
+        if (load.cacheable()) {
+            userPagesCache.put(key, load.value());
+        }
+        return load.value();
+    }
 
-        String regex = "^((\\+380)|0)[0-9]{9}$";
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(phoneNumber);
+    // the keyset cursor columns are always selected so the caller can build the next page link
+    private static Set<UserField> withCursorFields(Set<UserField> fields, UserField... cursorFields) {
+        Set<UserField> selected = EnumSet.copyOf(fields);
+        selected.addAll(Arrays.asList(cursorFields));
+        return selected;
+    }
 
-        if (matcher.matches()) {
-            return true;
+    private void recordValidationFailures(List<String> errors) {
+        for (String error : errors) {
+            meterRegistry.counter("users.validation.failures", "reason", error).increment();
         }
+    }
+
+    public boolean validateUserAge(User user) {
 
-        if (phoneNumber.isEmpty()) {
-            return true;
+        List<String> errors = userValidator.validate(user);
+        if (!errors.isEmpty()) {
+            recordValidationFailures(errors);
+            throw new IllegalArgumentException(errors.get(0));
         }
 
-        return false;
+        return true;
     }
 
-    public boolean validateDateOfBirth(LocalDate dateOfBirth) {
+    public void validateDateOfBirth(LocalDate dateOfBirth) {
 
         if (dateOfBirth == null) {
-            throw new IllegalArgumentException("Date of birth cannot be empty.");
-        }
-
-        try {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            String formattedDate = dateOfBirth.format(formatter);
-            LocalDate parsedDate = LocalDate.parse(formattedDate, formatter);
-            return !parsedDate.equals(dateOfBirth);
-        } catch (DateTimeParseException e) {
-            throw new IllegalArgumentException("Invalid date of birth format. Please use YYYY-MM-DD format.");
+            throw new DateOfBirthException("Date of birth cannot be empty.");
         }
     }
 }
@@ -0,0 +1,36 @@
+package com.forclearsolution.validators;
+
+import com.forclearsolution.models.User;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+
+public class UserConstraintValidator implements ConstraintValidator<ValidUser, User> {
+
+    private final UserValidator userValidator;
+
+    @Autowired
+    public UserConstraintValidator(UserValidator userValidator) {
+        this.userValidator = userValidator;
+    }
+
+    @Override
+    public boolean isValid(User user, ConstraintValidatorContext context) {
+        if (user == null) {
+            return true;
+        }
+
+        List<String> errors = userValidator.validate(user);
+        if (errors.isEmpty()) {
+            return true;
+        }
+
+        context.disableDefaultConstraintViolation();
+        for (String error : errors) {
+            context.buildConstraintViolationWithTemplate(error).addConstraintViolation();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,84 @@
+package com.forclearsolution.validators;
+
+import com.forclearsolution.models.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+@Component
+public class UserValidator {
+
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[\\w-\\.]+@([\\w-]+\\.)+[\\w-]{2,}$");
+
+    private static final Pattern PHONE_NUMBER_PATTERN = Pattern.compile("^((\\+380)|0)[0-9]{9}$");
+
+    private final int minAgeForRegistration;
+
+    public UserValidator(@Value("${minAgeForRegistration}") int minAgeForRegistration) {
+        this.minAgeForRegistration = minAgeForRegistration;
+    }
+
+    public List<String> validate(User user) {
+
+        List<String> errors = null;
+
+        if (isEmpty(user.getFirstName())) {
+            errors = addError(errors, "First name cannot be empty.");
+        }
+        if (isEmpty(user.getLastName())) {
+            errors = addError(errors, "Last name cannot be empty.");
+        }
+        if (isEmpty(user.getEmail())) {
+            errors = addError(errors, "Email cannot be empty.");
+        } else if (!isValidEmail(user.getEmail())) {
+            errors = addError(errors, "Invalid email format.");
+        }
+        if (!isValidPhoneNumber(user.getPhoneNumber())) {
+            errors = addError(errors, "Invalid phone number format.");
+        }
+
+        LocalDate dateOfBirth = user.getDateOfBirth();
+        if (dateOfBirth == null) {
+            errors = addError(errors, "Date of birth cannot be empty.");
+        } else {
+            LocalDate today = LocalDate.now();
+            if (dateOfBirth.isAfter(today)) {
+                errors = addError(errors, "The date of birth cannot be in the future.");
+            } else if (ChronoUnit.YEARS.between(dateOfBirth, today) < minAgeForRegistration) {
+                errors = addError(errors, "To register, the user must be over " + minAgeForRegistration + " years old.");
+            }
+        }
+
+        return errors == null ? Collections.emptyList() : errors;
+    }
+
+    public boolean isValidEmail(String email) {
+        return EMAIL_PATTERN.matcher(email).matches();
+    }
+
+    public boolean isValidPhoneNumber(String phoneNumber) {
+        return isEmpty(phoneNumber) || PHONE_NUMBER_PATTERN.matcher(phoneNumber).matches();
+    }
+
+    public int getMinAgeForRegistration() {
+        return minAgeForRegistration;
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    private static List<String> addError(List<String> errors, String error) {
+        if (errors == null) {
+            errors = new ArrayList<>(2);
+        }
+        errors.add(error);
+        return errors;
+    }
+}
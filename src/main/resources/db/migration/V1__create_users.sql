@@ -0,0 +1,22 @@
+create table users (
+    id bigint not null,
+    email varchar(255) not null,
+    first_name varchar(255) not null,
+    last_name varchar(255) not null,
+    date_of_birth date not null,
+    address varchar(255),
+    phone_number varchar(255),
+    version bigint not null,
+    primary key (id)
+) engine=InnoDB;
+
+-- MySQL has no sequences, Hibernate emulates users_seq with a single-row table
+create table users_seq (
+    next_val bigint
+) engine=InnoDB;
+
+insert into users_seq values (1);
+
+alter table users add constraint ux_users_email unique (email);
+
+create index idx_users_date_of_birth_id on users (date_of_birth, id);
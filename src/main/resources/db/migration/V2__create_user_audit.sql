@@ -0,0 +1,11 @@
+-- append-only, written in batches by UserAuditLog; changes holds a JSON object of field -> {from, to}
+create table user_audit (
+    id bigint not null auto_increment,
+    user_id bigint not null,
+    change_type varchar(16) not null,
+    changed_at datetime(6) not null,
+    changes text not null,
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_user_audit_user_id_id on user_audit (user_id, id);
@@ -0,0 +1,10 @@
+-- transactional outbox behind GET /users/changes, rows are appended in the same transaction as the user write;
+-- payload holds the user as returned by GET /users/{id}, null for deletes
+create table user_outbox (
+    seq bigint not null auto_increment,
+    user_id bigint not null,
+    change_type varchar(16) not null,
+    changed_at datetime(6) not null,
+    payload text,
+    primary key (seq)
+) engine=InnoDB;
@@ -0,0 +1,12 @@
+-- responses remembered for Idempotency-Key when idempotencyStore=jdbc, status is null while the first request runs
+create table idempotency_keys (
+    key_hash char(64) not null,
+    created_at datetime(6) not null,
+    status int,
+    content_type varchar(255),
+    body mediumblob,
+    fingerprint char(64),
+    primary key (key_hash)
+) engine=InnoDB;
+
+create index idx_idempotency_keys_created_at on idempotency_keys (created_at);
@@ -0,0 +1,2 @@
+-- user_outbox keeps changeFeedRetentionHours of events, the purge finds the oldest ones through this index
+create index idx_user_outbox_changed_at on user_outbox (changed_at);
@@ -0,0 +1,152 @@
+package com.forclearsolution.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControlFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testRateLimit_RejectsClientOverBurstWithRetryAfter() throws Exception {
+
+        AdmissionControlFilter filter = filter(new ClientRateLimiter(1, 2, 100), limiter(10));
+
+        assertEquals(200, perform(filter, "/users", "a").getStatus());
+        assertEquals(200, perform(filter, "/users", "a").getStatus());
+        MockHttpServletResponse rejected = perform(filter, "/users", "a");
+
+        assertEquals(429, rejected.getStatus());
+        assertEquals("1", rejected.getHeader("Retry-After"));
+        assertEquals("application/problem+json", rejected.getContentType());
+        assertEquals(200, perform(filter, "/users", "b").getStatus());
+        assertEquals(200, perform(filter, "/actuator/health", "a").getStatus());
+        assertEquals(1.0, meterRegistry.get("users.admission").tag("outcome", "rate_limited").counter().count());
+        assertEquals(3.0, meterRegistry.get("users.admission").tag("outcome", "admitted").counter().count());
+    }
+
+    @Test
+    void testRateLimit_KeysOnPrincipalOrAddressNotClientHeader() throws Exception {
+
+        AdmissionControlFilter filter = filter(new ClientRateLimiter(1, 1, 100), limiter(10));
+
+        assertEquals(200, perform(filter, "/users", "10.0.0.1").getStatus());
+        MockHttpServletRequest spoofed = new MockHttpServletRequest("GET", "/users");
+        spoofed.setRemoteAddr("10.0.0.1");
+        spoofed.addHeader("X-Client-Id", "someone-else");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(spoofed, response, new MockFilterChain());
+        assertEquals(429, response.getStatus());
+
+        MockHttpServletRequest authenticated = new MockHttpServletRequest("GET", "/users");
+        authenticated.setRemoteAddr("10.0.0.1");
+        authenticated.setUserPrincipal(() -> "alice");
+        response = new MockHttpServletResponse();
+        filter.doFilter(authenticated, response, new MockFilterChain());
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    void testRateLimit_ConcurrentRequestsGetExactlyTheBurst() throws Exception {
+
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(0.001, 500, 100);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                int granted = 0;
+                for (int i = 0; i < 200; i++) {
+                    if (rateLimiter.tryAcquire("a") == 0) {
+                        granted++;
+                    }
+                }
+                return granted;
+            }));
+        }
+        int granted = 0;
+        for (Future<Integer> future : futures) {
+            granted += future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(500, granted);
+    }
+
+    @Test
+    void testShed_RejectsOverTheConcurrencyLimit() throws Exception {
+
+        AdaptiveConcurrencyLimiter limiter = limiter(1);
+        AdmissionControlFilter filter = filter(new ClientRateLimiter(1000, 1000, 100), limiter);
+        assertTrue(limiter.tryAcquire());
+
+        MockHttpServletResponse rejected = perform(filter, "/users/1", "a");
+
+        assertEquals(503, rejected.getStatus());
+        assertEquals("1", rejected.getHeader("Retry-After"));
+        assertEquals(1.0, meterRegistry.get("users.admission").tag("outcome", "shed").counter().count());
+        limiter.release();
+        assertEquals(200, perform(filter, "/users/1", "a").getStatus());
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void testAdjust_ShrinksOnQueueingAndRecoversSlowly() {
+
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 100, 50, Long.MAX_VALUE, () -> 0);
+
+        limiter.adjust(51);
+        assertEquals(90, limiter.limit());
+        for (int i = 0; i < 50; i++) {
+            limiter.adjust(51);
+        }
+        assertEquals(4, limiter.limit());
+        limiter.adjust(50);
+        assertEquals(5, limiter.limit());
+    }
+
+    @Test
+    void testPoolQueueLatency_AveragesAcquireTimeSinceLastSample() {
+
+        AdmissionControlFilter.PoolQueueLatency latency = new AdmissionControlFilter.PoolQueueLatency(meterRegistry);
+        assertEquals(0, latency.sample());
+
+        Timer primary = Timer.builder("hikaricp.connections.acquire").tag("pool", "primary").register(meterRegistry);
+        Timer replica = Timer.builder("hikaricp.connections.acquire").tag("pool", "replica").register(meterRegistry);
+        primary.record(Duration.ofMillis(10));
+        replica.record(Duration.ofMillis(30));
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(20), latency.sample());
+        assertEquals(0, latency.sample());
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(int limit) {
+        return new AdaptiveConcurrencyLimiter(1, limit, TimeUnit.MILLISECONDS.toNanos(50), Long.MAX_VALUE, () -> 0);
+    }
+
+    private AdmissionControlFilter filter(ClientRateLimiter rateLimiter, AdaptiveConcurrencyLimiter limiter) {
+        return new AdmissionControlFilter(rateLimiter, limiter, new ObjectMapper(), meterRegistry, 1);
+    }
+
+    private static MockHttpServletResponse perform(AdmissionControlFilter filter, String uri, String client) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setRemoteAddr(client);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,133 @@
+package com.forclearsolution.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyFilterTest {
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private final IdempotencyFilter filter = new IdempotencyFilter(new InMemoryIdempotencyStore(Duration.ofMinutes(1), 1_000_000),
+            new ObjectMapper(), new SimpleMeterRegistry(), 200);
+
+    private final FilterChain register = (request, response) -> {
+        executions.incrementAndGet();
+        request.getInputStream().readAllBytes();
+        response.setContentType("text/plain");
+        response.getWriter().write("User added successfully.");
+    };
+
+    @Test
+    void testRetry_ReplaysFirstResponseWithoutRunningAgain() throws Exception {
+
+        MockHttpServletResponse first = perform("/users", "k1", "a", "{\"email\":\"a@x.com\"}", register);
+        MockHttpServletResponse retry = perform("/users", "k1", "a", "{\"email\":\"a@x.com\"}", register);
+
+        assertEquals(1, executions.get());
+        assertEquals(200, retry.getStatus());
+        assertEquals("User added successfully.", retry.getContentAsString());
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals("User added successfully.", first.getContentAsString());
+        assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    void testRetry_KeysAreScopedToClientAndPath() throws Exception {
+
+        perform("/users", "k1", "a", "{}", register);
+        perform("/users", "k1", "b", "{}", register);
+        perform("/users/batch", "k1", "a", "{}", register);
+        perform("/users", null, "a", "{}", register);
+
+        assertEquals(4, executions.get());
+    }
+
+    @Test
+    void testRetry_DifferentBodyIsRejected() throws Exception {
+
+        perform("/users", "k1", "a", "{\"email\":\"a@x.com\"}", register);
+        MockHttpServletResponse retry = perform("/users", "k1", "a", "{\"email\":\"b@x.com\"}", register);
+
+        assertEquals(422, retry.getStatus());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void testRetry_ServerErrorIsNotKept() throws Exception {
+
+        FilterChain failing = (request, response) -> {
+            executions.incrementAndGet();
+            ((HttpServletResponse) response).setStatus(500);
+        };
+
+        perform("/users", "k1", "a", "{}", failing);
+        assertEquals(200, perform("/users", "k1", "a", "{}", register).getStatus());
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void testRetry_WhileFirstRunsWaitsThenConflicts() throws Exception {
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        FilterChain slow = (request, response) -> {
+            started.countDown();
+            try {
+                finish.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            register.doFilter(request, response);
+        };
+        CompletableFuture<MockHttpServletResponse> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return perform("/users", "k1", "a", "{}", slow);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        MockHttpServletResponse concurrent = perform("/users", "k1", "a", "{}", register);
+        assertEquals(409, concurrent.getStatus());
+        assertEquals("1", concurrent.getHeader("Retry-After"));
+
+        finish.countDown();
+        assertEquals(200, first.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals("true", perform("/users", "k1", "a", "{}", register).getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void testInvalidKeyIsRejected() throws Exception {
+
+        assertEquals(400, perform("/users", " ", "a", "{}", register).getStatus());
+        assertEquals(0, executions.get());
+    }
+
+    private MockHttpServletResponse perform(String uri, String key, String client, String body, FilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        if (key != null) {
+            request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, key);
+        }
+        request.setRemoteAddr(client);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
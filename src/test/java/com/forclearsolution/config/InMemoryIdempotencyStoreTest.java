@@ -0,0 +1,42 @@
+package com.forclearsolution.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryIdempotencyStoreTest {
+
+    @Test
+    void testComplete_ReplaysResponseToLaterClaims() throws Exception {
+
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(Duration.ofMinutes(1), 1_000_000);
+
+        assertTrue(store.claim("k1", 0).owner());
+        store.complete("k1", new IdempotencyStore.Response(200, "text/plain", new byte[]{1, 2}, "f"));
+
+        IdempotencyStore.Claim retry = store.claim("k1", 0);
+        assertFalse(retry.owner());
+        assertArrayEquals(new byte[]{1, 2}, retry.response().body());
+    }
+
+    @Test
+    void testComplete_ResponsesBeyondTheByteBoundAreEvicted() throws Exception {
+
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(Duration.ofMinutes(1), 1_000);
+
+        assertTrue(store.claim("k1", 0).owner());
+        store.complete("k1", new IdempotencyStore.Response(200, "text/plain", new byte[2_000], "f"));
+
+        // eviction runs asynchronously after the write that made the entry heavy
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        IdempotencyStore.Claim claim;
+        while (!(claim = store.claim("k1", 0)).owner()) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+        assertNull(claim.response());
+    }
+}
@@ -0,0 +1,77 @@
+package com.forclearsolution.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcIdempotencyStoreTest {
+
+    private HikariDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private JdbcIdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:idempotency;MODE=MySQL");
+        dataSource.setUsername("sa");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table idempotency_keys (key_hash char(64) not null, created_at datetime(6) not null,"
+                + " status int, content_type varchar(255), body mediumblob, fingerprint char(64), primary key (key_hash))");
+        store = new JdbcIdempotencyStore(jdbcTemplate, Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void testClaim_SecondCallerGetsStoredResponse() throws Exception {
+
+        assertTrue(store.claim("a", 0).owner());
+        IdempotencyStore.Claim pending = store.claim("a", 100);
+        assertFalse(pending.owner());
+        assertNull(pending.response());
+
+        store.complete("a", new IdempotencyStore.Response(200, "text/plain", "ok".getBytes(StandardCharsets.UTF_8), "f"));
+
+        IdempotencyStore.Claim done = store.claim("a", 0);
+        assertFalse(done.owner());
+        assertEquals(200, done.response().status());
+        assertEquals("ok", new String(done.response().body(), StandardCharsets.UTF_8));
+        assertEquals("f", done.response().fingerprint());
+    }
+
+    @Test
+    void testRelease_LetsTheNextCallerRunIt() throws Exception {
+
+        assertTrue(store.claim("a", 0).owner());
+        store.release("a");
+
+        assertTrue(store.claim("a", 0).owner());
+    }
+
+    @Test
+    void testClaim_ExpiredAndAbandonedKeysAreTakenOver() throws Exception {
+
+        assertTrue(store.claim("expired", 0).owner());
+        store.complete("expired", new IdempotencyStore.Response(200, null, new byte[0], "f"));
+        assertTrue(store.claim("abandoned", 0).owner());
+        jdbcTemplate.update("update idempotency_keys set created_at = ?", Timestamp.from(Instant.now().minus(Duration.ofHours(2))));
+
+        assertTrue(store.claim("expired", 0).owner());
+        assertTrue(store.claim("abandoned", 0).owner());
+    }
+}
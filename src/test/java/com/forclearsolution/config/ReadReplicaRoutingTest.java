@@ -0,0 +1,294 @@
+package com.forclearsolution.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forclearsolution.models.User;
+import com.forclearsolution.repositories.UserRepository;
+import com.forclearsolution.services.impl.UserCacheLoader;
+import com.forclearsolution.services.impl.UserChangeFeed;
+import com.forclearsolution.services.impl.UserChangeTracker;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReadReplicaRoutingTest {
+
+    private final List<AutoCloseable> closeables = new ArrayList<>();
+
+    private HikariDataSource primary;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (AutoCloseable closeable : closeables) {
+            closeable.close();
+        }
+    }
+
+    @Test
+    void testReadOnlyTransactionsUseReplica() {
+        database("replica");
+        DataSource dataSource = routingDataSource("jdbc:h2:mem:replica");
+
+        assertEquals("replica", readNode(dataSource, true));
+        assertEquals("primary", readNode(dataSource, false));
+    }
+
+    @Test
+    void testReadsOnPrimaryInsideReadOnlyTransaction() {
+        database("replica");
+        DataSource dataSource = routingDataSource("jdbc:h2:mem:replica");
+
+        assertEquals("primary", ReplicaDataSource.onPrimary(() -> readNode(dataSource, true)));
+        assertEquals("replica", readNode(dataSource, true));
+    }
+
+    @Test
+    void testUnreachableReplicaIsSkipped() {
+        database("replica");
+        DataSource dataSource = routingDataSource("jdbc:h2:mem:missing;IFEXISTS=TRUE", "jdbc:h2:mem:replica");
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals("replica", readNode(dataSource, true));
+        }
+    }
+
+    @Test
+    void testNoHealthyReplicaFallsBackToPrimary() {
+        DataSource dataSource = routingDataSource("jdbc:h2:mem:missing;IFEXISTS=TRUE");
+
+        assertEquals("primary", readNode(dataSource, true));
+    }
+
+    @Test
+    void testReadsAfterClientWriteStayOnPrimary() throws Exception {
+        database("replica");
+        DataSource dataSource = routingDataSource("jdbc:h2:mem:replica");
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofMinutes(1));
+        String[] node = new String[1];
+
+        filter.doFilter(request("GET", "10.0.0.1"), new MockHttpServletResponse(), (req, res) -> node[0] = readNode(dataSource, true));
+        assertEquals("replica", node[0]);
+
+        filter.doFilter(request("PATCH", "10.0.0.1"), new MockHttpServletResponse(), (req, res) -> { });
+        filter.doFilter(request("GET", "10.0.0.1"), new MockHttpServletResponse(), (req, res) -> node[0] = readNode(dataSource, true));
+        assertEquals("primary", node[0]);
+
+        filter.doFilter(request("GET", "10.0.0.2"), new MockHttpServletResponse(), (req, res) -> node[0] = readNode(dataSource, true));
+        assertEquals("replica", node[0]);
+        // the pin never outlives the request
+        assertEquals("replica", readNode(dataSource, true));
+    }
+
+    @Test
+    void testClientHeaderNeitherPinsNorUnpins() throws Exception {
+        database("replica");
+        DataSource dataSource = routingDataSource("jdbc:h2:mem:replica");
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofMinutes(1));
+        String[] node = new String[1];
+
+        MockHttpServletRequest spoofedWrite = request("PATCH", "10.0.0.2");
+        spoofedWrite.addHeader("X-Client-Id", "10.0.0.1");
+        filter.doFilter(spoofedWrite, new MockHttpServletResponse(), (req, res) -> { });
+        filter.doFilter(request("GET", "10.0.0.1"), new MockHttpServletResponse(), (req, res) -> node[0] = readNode(dataSource, true));
+        assertEquals("replica", node[0]);
+
+        MockHttpServletRequest spoofedRead = request("GET", "10.0.0.2");
+        spoofedRead.addHeader("X-Client-Id", "someone-else");
+        filter.doFilter(spoofedRead, new MockHttpServletResponse(), (req, res) -> node[0] = readNode(dataSource, true));
+        assertEquals("primary", node[0]);
+    }
+
+    @Test
+    void testReadOnlyRepositoryCallsThroughJpaUseReplica() {
+        HikariDataSource replica = database("replica");
+        createUsers(primary, "primary@example.com");
+        createUsers(replica, "replica@example.com");
+        DataSource dataSource = routingDataSource("jdbc:h2:mem:replica");
+
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.registerBean(DataSource.class, () -> dataSource);
+            context.register(JpaConfig.class);
+            context.refresh();
+            UserRepository userRepository = context.getBean(UserRepository.class);
+            TransactionTemplate readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+            readOnly.setReadOnly(true);
+            TransactionTemplate readWrite = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+            // the inherited CRUD methods carry the read-only transaction of SimpleJpaRepository, declared query
+            // methods have none of their own and follow the transaction of the caller
+            assertEquals("replica@example.com", userRepository.findById(1L).orElseThrow().getEmail());
+            assertEquals(Optional.of(1L), readOnly.execute(status -> userRepository.findByEmail("replica@example.com").map(User::getId)));
+            assertEquals(Optional.empty(), userRepository.findByEmail("replica@example.com"));
+            assertEquals("primary@example.com",
+                    readWrite.execute(status -> userRepository.findById(1L).orElseThrow().getEmail()));
+        }
+    }
+
+    @Test
+    void testCacheLoadsRunOnReplicaAndTellWhetherItCaughtUp() {
+        HikariDataSource replica = database("replica");
+        createUsers(primary, "primary@example.com");
+        createUsers(replica, "replica@example.com");
+        createOutbox(primary, 2);
+        createOutbox(replica, 1);
+        DataSource dataSource = routingDataSource("jdbc:h2:mem:replica");
+        UserChangeTracker changeTracker = mock(UserChangeTracker.class);
+        when(changeTracker.fence()).thenReturn(new UserChangeTracker.Fence(4, 0, 2, 2));
+        UserChangeFeed changeFeed = new UserChangeFeed(new JdbcTemplate(dataSource), new ObjectMapper(),
+                new SimpleMeterRegistry(), 60_000, 1000, 1);
+        closeables.add(changeFeed::close);
+
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.registerBean(DataSource.class, () -> dataSource);
+            context.registerBean(UserCacheLoader.class, () -> new UserCacheLoader(changeTracker, changeFeed));
+            context.register(JpaConfig.class);
+            context.refresh();
+            UserRepository userRepository = context.getBean(UserRepository.class);
+            UserCacheLoader cacheLoader = context.getBean(UserCacheLoader.class);
+
+            UserCacheLoader.Load<String> load = cacheLoader.load(4, () -> userRepository.findById(1L).orElseThrow().getEmail());
+            assertEquals("replica@example.com", load.value());
+            assertFalse(load.cacheable());
+
+            new JdbcTemplate(replica).update("insert into user_outbox (seq, user_id, change_type, changed_at) values (2, 1, 'UPDATED', now())");
+            assertTrue(cacheLoader.load(4, () -> userRepository.findById(1L).orElseThrow().getEmail()).cacheable());
+            assertFalse(cacheLoader.load(5, () -> userRepository.findById(1L).orElseThrow().getEmail()).cacheable());
+        }
+    }
+
+    @Test
+    void testCredentialsGoToTheSelectedDataSource() throws Exception {
+        HikariDataSource replica = database("replica");
+        JdbcDataSource unpooledPrimary = new JdbcDataSource();
+        unpooledPrimary.setURL("jdbc:h2:mem:primary");
+        ReplicaDataSource replicaDataSource = new ReplicaDataSource(unpooledPrimary, List.of(replica), 60);
+        closeables.add(replicaDataSource);
+
+        // the pool does not take per-call credentials, which says nothing about its health
+        assertThrows(SQLFeatureNotSupportedException.class, () -> replicaDataSource.getConnection("sa", ""));
+        assertEquals(1, replicaDataSource.healthyReplicas());
+
+        String node = ReplicaDataSource.onPrimary(() -> {
+            try (Connection connection = replicaDataSource.getConnection("sa", "")) {
+                return new JdbcTemplate(new SingleConnectionDataSource(connection, true))
+                        .queryForObject("select name from node", String.class);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertEquals("primary", node);
+    }
+
+    private DataSource routingDataSource(String... replicaUrls) {
+        ReadReplicaConfig config = new ReadReplicaConfig();
+        ReplicaDataSource replicaDataSource = config.replicaDataSource(primary, List.of(replicaUrls), 60);
+        closeables.add(replicaDataSource);
+        return config.dataSource(primary, replicaDataSource);
+    }
+
+    private static String readNode(DataSource dataSource, boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status -> new JdbcTemplate(dataSource).queryForObject("select name from node", String.class));
+    }
+
+    private static void createUsers(DataSource dataSource, String email) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table users (id bigint not null, email varchar(255) not null,"
+                + " first_name varchar(255) not null, last_name varchar(255) not null, date_of_birth date not null,"
+                + " address varchar(255), phone_number varchar(255), version bigint not null, primary key (id))");
+        jdbcTemplate.update("insert into users values (1, ?, 'John', 'Doe', date '1990-01-01', null, null, 0)", email);
+    }
+
+    private static void createOutbox(DataSource dataSource, int events) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table user_outbox (seq bigint not null auto_increment, user_id bigint not null,"
+                + " change_type varchar(16) not null, changed_at datetime(6) not null, payload text, primary key (seq))");
+        for (int seq = 1; seq <= events; seq++) {
+            jdbcTemplate.update("insert into user_outbox (seq, user_id, change_type, changed_at) values (?, 1, 'UPDATED', now())", seq);
+        }
+    }
+
+    private HikariDataSource database(String name) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + name);
+        dataSource.setUsername("sa");
+        closeables.add(dataSource);
+        // the pool keeps the in-memory database alive until the test closes it
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table node (name varchar(16))");
+        jdbcTemplate.update("insert into node values (?)", name);
+        return dataSource;
+    }
+
+    private static MockHttpServletRequest request(String method, String address) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/users/1");
+        request.setRemoteAddr(address);
+        return request;
+    }
+
+    // the persistence setup of the application: Hibernate through JpaTransactionManager, with the column names Spring Boot derives
+    @Configuration
+    @EnableTransactionManagement
+    @EnableJpaRepositories(basePackageClasses = UserRepository.class)
+    static class JpaConfig {
+
+        @Bean
+        LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+            LocalContainerEntityManagerFactoryBean entityManagerFactory = new LocalContainerEntityManagerFactoryBean();
+            entityManagerFactory.setDataSource(dataSource);
+            entityManagerFactory.setPackagesToScan(User.class.getPackageName());
+            entityManagerFactory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+            entityManagerFactory.setJpaPropertyMap(Map.of(
+                    "hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName(),
+                    "jakarta.persistence.validation.mode", "none"));
+            return entityManagerFactory;
+        }
+
+        @Bean
+        JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+            return new JpaTransactionManager(entityManagerFactory);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.forclearsolution.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RepositoryConcurrencyLimiterTest {
+
+    @Test
+    void testLimit_NestedCallsShareOnePermit() throws Throwable {
+        RepositoryConcurrencyLimiter limiter = new RepositoryConcurrencyLimiter(1, 100);
+        ProceedingJoinPoint inner = mock(ProceedingJoinPoint.class);
+        ProceedingJoinPoint outer = mock(ProceedingJoinPoint.class);
+        when(inner.proceed()).thenReturn("inner");
+        when(outer.proceed()).thenAnswer(invocation -> limiter.limit(inner));
+
+        assertEquals("inner", limiter.limit(outer));
+        assertEquals(1, limiter.availablePermits());
+    }
+
+    @Test
+    void testLimit_TimesOutWhenAllPermitsAreHeld() throws Throwable {
+        RepositoryConcurrencyLimiter limiter = new RepositoryConcurrencyLimiter(1, 50);
+
+        assertTimesOutWhileHeld(limiter, () -> limiter.limit(mock(ProceedingJoinPoint.class)));
+    }
+
+    @Test
+    void testLimit_CoversJdbcTemplateCalls() throws Throwable {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(JdbcConfig.class)) {
+            RepositoryConcurrencyLimiter limiter = context.getBean(RepositoryConcurrencyLimiter.class);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+            assertTimesOutWhileHeld(limiter, () -> jdbcTemplate.queryForObject("select 1", Integer.class));
+            assertEquals(1, jdbcTemplate.queryForObject("select 1", Integer.class));
+        }
+    }
+
+    private static void assertTimesOutWhileHeld(RepositoryConcurrencyLimiter limiter, Executable call) throws Throwable {
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ProceedingJoinPoint blocking = mock(ProceedingJoinPoint.class);
+        when(blocking.proceed()).thenAnswer(invocation -> {
+            holding.countDown();
+            release.await();
+            return null;
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> holder = executor.submit(() -> {
+                try {
+                    return limiter.limit(blocking);
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            holding.await();
+
+            assertThrows(DataAccessResourceFailureException.class, call);
+
+            release.countDown();
+            holder.get();
+            assertEquals(1, limiter.availablePermits());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Configuration
+    // boot proxies classes, so beans injected as JdbcTemplate keep their type
+    @EnableAspectJAutoProxy(proxyTargetClass = true)
+    static class JdbcConfig {
+
+        @Bean
+        RepositoryConcurrencyLimiter repositoryConcurrencyLimiter() {
+            return new RepositoryConcurrencyLimiter(1, 50);
+        }
+
+        @Bean
+        JdbcTemplate jdbcTemplate() {
+            JdbcDataSource dataSource = new JdbcDataSource();
+            dataSource.setURL("jdbc:h2:mem:limiter");
+            return new JdbcTemplate(dataSource);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.forclearsolution.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RequestStatementMetricsFilterTest {
+
+    @Test
+    void testDoFilter_RecordsStatementsPerRequest() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RequestStatementMetricsFilter filter = new RequestStatementMetricsFilter(meterRegistry);
+        SqlStatementCounter counter = new SqlStatementCounter();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users/1");
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/users/{id}");
+            counter.inspect("select 1");
+            counter.inspect("select 2");
+        });
+
+        DistributionSummary summary = meterRegistry.get("http.server.requests.sql.statements")
+                .tag("uri", "/users/{id}")
+                .summary();
+        assertEquals(1, summary.count());
+        assertEquals(2.0, summary.totalAmount());
+    }
+}
@@ -2,6 +2,7 @@ package com.forclearsolution.controllers;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 
@@ -21,7 +22,7 @@ public class GlobalExceptionHandlerTest {
         ResponseEntity<Object> responseEntity = globalExceptionHandler.handleHttpMessageNotReadable(exception);
 
         assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
-        assertEquals("Invalid date of birth format. Please use YYYY-MM-DD format.", responseEntity.getBody());
+        assertEquals("Invalid date of birth format. Please use YYYY-MM-DD format.", ((ProblemDetail) responseEntity.getBody()).getDetail());
     }
 
     @Test
@@ -32,6 +33,17 @@ public class GlobalExceptionHandlerTest {
         ResponseEntity<Object> responseEntity = globalExceptionHandler.DateTimeParseException(exception);
 
         assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
-        assertEquals("Invalid date of birth format. Please use YYYY-MM-DD format.", responseEntity.getBody());
+        assertEquals("Invalid date of birth format. Please use YYYY-MM-DD format.", ((ProblemDetail) responseEntity.getBody()).getDetail());
+    }
+
+    @Test
+    void testHandleIllegalArgument_ProblemDetail() {
+
+        ResponseEntity<Object> responseEntity = globalExceptionHandler.handleIllegalArgument(new IllegalArgumentException("Invalid email format."));
+
+        ProblemDetail problem = (ProblemDetail) responseEntity.getBody();
+        assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        assertEquals(400, problem.getStatus());
+        assertEquals("Invalid email format.", problem.getDetail());
     }
 }
@@ -1,24 +1,43 @@
 package com.forclearsolution.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forclearsolution.models.BatchRowResult;
+import com.forclearsolution.models.BirthDateCursor;
 import com.forclearsolution.models.User;
+import com.forclearsolution.models.UserChange;
+import com.forclearsolution.models.UserFeedPage;
+import com.forclearsolution.models.UserField;
+import com.forclearsolution.models.UserPage;
+import com.forclearsolution.models.UserResult;
 import com.forclearsolution.services.UserService;
-import jakarta.persistence.EntityNotFoundException;
+import com.forclearsolution.services.impl.UserChangeTracker;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.*;
 
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.mockito.Mockito.when;
 
@@ -28,164 +47,475 @@ public class UserControllerTest {
     @Mock
     private UserService userService;
 
+    @Spy
+    private UserChangeTracker changeTracker = new UserChangeTracker();
+
     @InjectMocks
     private UserController userController;
 
     @Test
     public void testRegisterUserSuccessfully() {
         User user = new User();
-        when(userService.createUser(user)).thenReturn(user);
+        when(userService.tryCreateUser(user)).thenReturn(UserResult.ok(user));
 
-        ResponseEntity<String> response = userController.register(user);
+        ResponseEntity<Object> response = userController.register(user);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals("User added successfully.", response.getBody());
-        verify(userService, times(1)).createUser(user);
+        verify(userService, times(1)).tryCreateUser(user);
+    }
+
+    @Test
+    public void testRegisterDuplicateIsConflict() {
+        User user = new User();
+        when(userService.tryCreateUser(user)).thenReturn(UserResult.duplicate());
+
+        ResponseEntity<Object> response = userController.register(user);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertEquals("This user already exists!", ((ProblemDetail) response.getBody()).getDetail());
+    }
+
+    @Test
+    public void testRegisterWhileTheSameEmailIsStillRegisteringIsConflict() {
+        User user = new User();
+        when(userService.tryCreateUser(user)).thenReturn(UserResult.registrationInProgress());
+
+        ResponseEntity<Object> response = userController.register(user);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertEquals("A registration of this email is still in progress, retry shortly.",
+                ((ProblemDetail) response.getBody()).getDetail());
     }
 
     @Test
     public void testRegisterUserWithInvalidDetails() {
         User user = new User();
-        when(userService.createUser(user)).thenThrow(new IllegalArgumentException("Invalid user details"));
+        when(userService.tryCreateUser(user)).thenReturn(UserResult.invalid(List.of("Invalid user details", "Invalid email format.")));
 
-        ResponseEntity<String> response = userController.register(user);
+        ResponseEntity<Object> response = userController.register(user);
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
-        assertEquals("Invalid user details", response.getBody());
-        verify(userService, times(1)).createUser(user);
+        ProblemDetail problem = (ProblemDetail) response.getBody();
+        assertEquals("Invalid user details", problem.getDetail());
+        assertEquals(List.of("Invalid user details", "Invalid email format."), problem.getProperties().get("errors"));
+        verify(userService, times(1)).tryCreateUser(user);
+    }
+
+    @Test
+    void testRegisterBatch_Ndjson() throws IOException {
+        UserController userController = new UserController(userService, new ObjectMapper().findAndRegisterModules(), changeTracker);
+        String body = "{\"email\":\"a@example.com\",\"dateOfBirth\":\"1990-01-01\"}\n"
+                + "{\"email\":\"b@example.com\",\"dateOfBirth\":\"not-a-date\"}\n"
+                + "{\"email\":\"c@example.com\",\"dateOfBirth\":\"1990-01-01\"}\n";
+
+        when(userService.createUsers(anyList(), anyInt())).thenAnswer(invocation -> {
+            List<User> chunk = invocation.getArgument(0);
+            int firstIndex = invocation.getArgument(1);
+            List<BatchRowResult> results = new ArrayList<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                results.add(new BatchRowResult(firstIndex + i, chunk.get(i).getEmail(), BatchRowResult.Status.CREATED, (long) firstIndex + i, null));
+            }
+            return results;
+        });
+
+        ResponseEntity<List<BatchRowResult>> response = userController.registerBatch(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+        List<BatchRowResult> results = response.getBody();
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(3, results.size());
+        assertEquals("a@example.com", results.get(0).getEmail());
+        assertEquals(BatchRowResult.Status.INVALID, results.get(1).getStatus());
+        assertEquals(2, results.get(2).getIndex());
+        assertEquals("c@example.com", results.get(2).getEmail());
+    }
+
+    @Test
+    void testRegisterBatch_SyntaxErrorAfterFirstChunkKeepsItsReport() throws IOException {
+        UserController userController = new UserController(userService, new ObjectMapper().findAndRegisterModules(), changeTracker);
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 500; i++) {
+            body.append("{\"email\":\"user").append(i).append("@example.com\",\"dateOfBirth\":\"1990-01-01\"},");
+        }
+        body.append("{\"email\":\"late@example.com\",\"dateOfBirth\":");
+
+        when(userService.createUsers(anyList(), anyInt())).thenAnswer(invocation -> {
+            List<User> chunk = invocation.getArgument(0);
+            int firstIndex = invocation.getArgument(1);
+            List<BatchRowResult> results = new ArrayList<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                results.add(new BatchRowResult(firstIndex + i, chunk.get(i).getEmail(), BatchRowResult.Status.CREATED, (long) firstIndex + i, null));
+            }
+            return results;
+        });
+
+        ResponseEntity<List<BatchRowResult>> response = userController.registerBatch(
+                new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)));
+
+        List<BatchRowResult> results = response.getBody();
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(501, results.size());
+        assertEquals(BatchRowResult.Status.CREATED, results.get(499).getStatus());
+        assertEquals(500, results.get(500).getIndex());
+        assertEquals(BatchRowResult.Status.INVALID, results.get(500).getStatus());
+        verify(userService, times(1)).createUsers(anyList(), anyInt());
+    }
+
+    @Test
+    void testRegisterBatch_MalformedJsonMidChunkRegistersTheRowsBefore() throws IOException {
+        UserController userController = new UserController(userService, new ObjectMapper().findAndRegisterModules(), changeTracker);
+        String body = "{\"email\":\"a@example.com\",\"dateOfBirth\":\"1990-01-01\"}\n"
+                + "{\"email\" \"b@example.com\"}\n"
+                + "{\"email\":\"c@example.com\",\"dateOfBirth\":\"1990-01-01\"}\n";
+
+        when(userService.createUsers(anyList(), anyInt())).thenAnswer(invocation -> {
+            List<User> chunk = invocation.getArgument(0);
+            return List.of(new BatchRowResult(0, chunk.get(0).getEmail(), BatchRowResult.Status.CREATED, 1L, null));
+        });
+
+        List<BatchRowResult> results = userController.registerBatch(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))).getBody();
+
+        assertEquals(2, results.size());
+        assertEquals("a@example.com", results.get(0).getEmail());
+        assertEquals(1, results.get(1).getIndex());
+        assertEquals(BatchRowResult.Status.INVALID, results.get(1).getStatus());
     }
 
     @Test
     void testAllUsers() {
-        List<User> userList = new ArrayList<>();
-        userList.add(new User(1L, "test1@example.com", "John", "Doe", LocalDate.now(), "Address 1", "123456789"));
-        userList.add(new User(2L, "test2@example.com", "Jane", "Doe", LocalDate.now(), "Address 2", "987654321"));
+        List<Map<String, Object>> userList = new ArrayList<>();
+        userList.add(Map.of("id", 1L, "email", "test1@example.com"));
+        userList.add(Map.of("id", 2L, "email", "test2@example.com"));
 
-        when(userService.listUsers()).thenReturn(userList);
+        when(userService.listUserViews(null, 50, EnumSet.allOf(UserField.class))).thenReturn(userList);
 
-        List<User> returnedUsers = userController.allUsers();
+        ResponseEntity<Object> response = userController.allUsers(null, 50, null);
 
-        assertEquals(userList.size(), returnedUsers.size());
-        for (int i = 0; i < userList.size(); i++) {
-            assertEquals(userList.get(i), returnedUsers.get(i));
-        }
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(userList, ((UserPage<?>) response.getBody()).getUsers());
+        assertNull(((UserPage<?>) response.getBody()).getNextCursor());
+    }
+
+    @Test
+    void testAllUsers_SelectedFields() {
+        when(userService.listUserViews(null, 50, EnumSet.of(UserField.EMAIL, UserField.DATE_OF_BIRTH)))
+                .thenReturn(List.of(Map.of("id", 1L, "email", "test1@example.com")));
+
+        ResponseEntity<Object> response = userController.allUsers(null, 50, "email, dateOfBirth");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1, ((UserPage<?>) response.getBody()).getUsers().size());
+    }
+
+    @Test
+    void testAllUsers_SendsRevalidationHeaders() {
+        when(userService.listUserViews(null, 50, EnumSet.allOf(UserField.class))).thenReturn(List.of());
+
+        ResponseEntity<Object> response = userController.allUsers(null, 50, null);
+
+        UserChangeTracker.Generation generation = changeTracker.current();
+        assertEquals("no-cache, private", response.getHeaders().getCacheControl());
+        assertEquals(generation.etag(), response.getHeaders().getETag());
+        assertEquals(generation.lastModified().toEpochMilli(), response.getHeaders().getLastModified());
+
+        changeTracker.recordWrite();
+        ResponseEntity<Object> afterWrite = userController.allUsers(null, 50, null);
+        assertNotEquals(generation.etag(), afterWrite.getHeaders().getETag());
+    }
+
+    @Test
+    void testAllUsers_UnknownField() {
+        ResponseEntity<Object> response = userController.allUsers(null, 50, "id,password");
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(userService, never()).listUserViews(any(), anyInt(), any());
+    }
+
+    @Test
+    void testAllUsers_FullPageReturnsNextCursor() {
+        List<Map<String, Object>> userList = new ArrayList<>();
+        userList.add(Map.of("id", 3L));
+        userList.add(Map.of("id", 4L));
+
+        when(userService.listUserViews(2L, 2, EnumSet.of(UserField.ID))).thenReturn(userList);
+
+        ResponseEntity<Object> response = userController.allUsers(2L, 2, "id");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(4L, ((UserPage<?>) response.getBody()).getNextCursor());
+    }
+
+    @Test
+    void testAllUsers_InvalidLimit() {
+        ResponseEntity<Object> response = userController.allUsers(null, 0, null);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("limit must be between 1 and 1000.", ((ProblemDetail) response.getBody()).getDetail());
+        verify(userService, never()).listUserViews(any(), anyInt(), any());
+    }
+
+    @Test
+    void testSearchUsers_FullPageReturnsNextCursor() {
+        when(userService.searchUsers("jo", null, 1, EnumSet.allOf(UserField.class)))
+                .thenReturn(new UserPage<>(List.of(Map.of("id", 4L, "email", "john@example.com")), 4L));
+
+        ResponseEntity<Object> response = userController.searchUsers("jo", null, 1, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(4L, ((UserPage<?>) response.getBody()).getNextCursor());
+    }
+
+    @Test
+    void testSearchUsers_BlankQuery() {
+        when(userService.searchUsers(" ", null, 20, EnumSet.allOf(UserField.class)))
+                .thenThrow(new IllegalArgumentException("Search query cannot be empty."));
+
+        ResponseEntity<Object> response = userController.searchUsers(" ", null, 20, null);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Search query cannot be empty.", ((ProblemDetail) response.getBody()).getDetail());
     }
 
     @Test
     void testGetUserById_UserFound() {
         User user = new User(1L, "test@example.com", "John", "Doe", LocalDate.now(), "Address", "123456789");
 
-        when(userService.getUserById(1L)).thenReturn(user);
+        when(userService.findUserById(1L)).thenReturn(Optional.of(user));
 
-        ResponseEntity<Object> response = userController.getUserById(1L);
+        ResponseEntity<Object> response = userController.getUserById(1L, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(user, response.getBody());
     }
 
+    @Test
+    void testGetUserById_ReturnsETagAndNotModified() {
+        User user = new User(1L, "test@example.com", "John", "Doe", LocalDate.now(), "Address", "123456789");
+        user.setVersion(3L);
+        when(userService.findUserById(1L)).thenReturn(Optional.of(user));
+
+        ResponseEntity<Object> response = userController.getUserById(1L, null);
+        assertEquals("\"3\"", response.getHeaders().getETag());
+
+        ResponseEntity<Object> notModified = userController.getUserById(1L, "\"2\", W/\"3\"");
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertNull(notModified.getBody());
+        assertEquals(HttpStatus.OK, userController.getUserById(1L, "\"2\"").getStatusCode());
+    }
+
     @Test
     void testGetUserById_UserNotFound() {
 
-        when(userService.getUserById(1L)).thenThrow(EntityNotFoundException.class);
+        when(userService.findUserById(1L)).thenReturn(Optional.empty());
 
-        ResponseEntity<Object> response = userController.getUserById(1L);
+        ResponseEntity<Object> response = userController.getUserById(1L, null);
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
-        assertEquals("User not found with id: 1", response.getBody());
+        assertEquals("User not found with id: 1", detail(response));
     }
 
     @Test
     void testDeleteUser_UserFound() {
         UserService userService = mock(UserService.class);
-        UserController userController = new UserController(userService);
+        UserController userController = new UserController(userService, new ObjectMapper(), changeTracker);
         Long userId = 1L;
+        when(userService.tryDeleteUser(userId, null)).thenReturn(UserResult.ok(null));
 
-        when(userService.getUserById(userId)).thenReturn(new User());
-
-        ResponseEntity<String> response = userController.deleteUser(userId);
+        ResponseEntity<Object> response = userController.deleteUser(userId, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals("User deleted successfully.", response.getBody());
-        verify(userService, times(1)).deleteUser(userId);
+        verify(userService, times(1)).tryDeleteUser(userId, null);
+        verify(userService, never()).getUserById(userId);
     }
 
     @Test
     void testDeleteUser_UserNotFound() {
         UserService userService = mock(UserService.class);
-        UserController userController = new UserController(userService);
+        UserController userController = new UserController(userService, new ObjectMapper(), changeTracker);
         Long userId = 1L;
 
-        when(userService.getUserById(userId)).thenReturn(null);
+        when(userService.tryDeleteUser(userId, null)).thenReturn(UserResult.notFound(userId));
 
-        ResponseEntity<String> response = userController.deleteUser(userId);
+        ResponseEntity<Object> response = userController.deleteUser(userId, null);
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
-        assertEquals("User not found with id: " + userId, response.getBody());
-        verify(userService, never()).deleteUser(userId);
+        assertEquals("The user was not deleted because the user was not found by id: " + userId, detail(response));
+        verify(userService, never()).getUserById(userId);
     }
 
     @Test
-    void testDeleteUser_UserNotFoundException() {
+    void testDeleteUser_UserNotFoundWithIfMatch() {
         UserService userService = mock(UserService.class);
-        UserController userController = new UserController(userService);
+        UserController userController = new UserController(userService, new ObjectMapper(), changeTracker);
         Long userId = 1L;
 
-        when(userService.getUserById(userId)).thenThrow(EntityNotFoundException.class);
+        when(userService.tryDeleteUser(userId, 2L)).thenReturn(UserResult.notFound(userId));
 
-        ResponseEntity<String> response = userController.deleteUser(userId);
+        ResponseEntity<Object> response = userController.deleteUser(userId, "\"2\"");
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
-        assertEquals("The user was not deleted because the user was not found by id: " + userId, response.getBody());
-        verify(userService, never()).deleteUser(userId);
+        assertEquals("The user was not deleted because the user was not found by id: " + userId, detail(response));
+        verify(userService, never()).deleteUser(any(), any());
     }
 
     @Test
     void testUpdateUser_UserUpdatedSuccessfully() {
         UserService userService = mock(UserService.class);
-        UserController userController = new UserController(userService);
+        UserController userController = new UserController(userService, new ObjectMapper(), changeTracker);
         Long userId = 1L;
         User updatedUser = new User(userId, "test@example.com", "John", "Doe", LocalDate.now(), "Address", "123456789");
 
-        when(userService.updateUser(any(User.class), eq(userId))).thenReturn(updatedUser);
+        when(userService.tryUpdateUser(any(User.class), eq(userId), isNull())).thenReturn(UserResult.ok(updatedUser));
 
-        ResponseEntity<Object> response = userController.updateUser(userId, updatedUser);
+        ResponseEntity<Object> response = userController.updateUser(userId, null, updatedUser);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(updatedUser, response.getBody());
     }
 
+    @Test
+    void testUpdateUser_IfMatchPassesExpectedVersion() {
+        User updatedUser = new User(1L, "test@example.com", "John", "Doe", LocalDate.now(), "Address", "123456789");
+        updatedUser.setVersion(5L);
+        when(userService.tryUpdateUser(any(User.class), eq(1L), eq(4L))).thenReturn(UserResult.ok(updatedUser));
+
+        ResponseEntity<Object> response = userController.updateUser(1L, "\"4\"", updatedUser);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"5\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    void testUpdateUser_StaleIfMatchIsPreconditionFailed() {
+        User patch = new User();
+        when(userService.tryUpdateUser(patch, 1L, 4L)).thenReturn(UserResult.stale(1L));
+
+        assertEquals(HttpStatus.PRECONDITION_FAILED, userController.updateUser(1L, "\"4\"", patch).getStatusCode());
+        assertEquals(HttpStatus.PRECONDITION_FAILED, userController.updateUser(1L, "W/\"4\"", patch).getStatusCode());
+        verify(userService, times(1)).tryUpdateUser(any(), any(), any());
+    }
+
+    @Test
+    void testUpdateUser_LostRaceWithoutIfMatchIsConflict() {
+        User patch = new User();
+        when(userService.tryUpdateUser(patch, 1L, null)).thenReturn(UserResult.stale(1L));
+
+        assertEquals(HttpStatus.CONFLICT, userController.updateUser(1L, null, patch).getStatusCode());
+    }
+
+    @Test
+    void testDeleteUser_StaleIfMatchIsPreconditionFailed() {
+        when(userService.tryDeleteUser(1L, 2L)).thenReturn(UserResult.stale(1L));
+
+        ResponseEntity<Object> response = userController.deleteUser(1L, "\"2\"");
+
+        assertEquals(HttpStatus.PRECONDITION_FAILED, response.getStatusCode());
+    }
+
     @Test
     void testUpdateUser_InvalidDetails() {
         UserService userService = mock(UserService.class);
-        UserController userController = new UserController(userService);
+        UserController userController = new UserController(userService, new ObjectMapper(), changeTracker);
         Long userId = 1L;
         User updatedUser = new User(userId, "test@example.com", "John", "Doe", LocalDate.now(), "Address", "123456789");
 
-        when(userService.updateUser(any(User.class), eq(userId))).thenThrow(IllegalArgumentException.class);
+        when(userService.tryUpdateUser(any(User.class), eq(userId), isNull()))
+                .thenReturn(UserResult.invalid(List.of("Invalid phone number format.")));
 
-        ResponseEntity<Object> response = userController.updateUser(userId, updatedUser);
+        ResponseEntity<Object> response = userController.updateUser(userId, null, updatedUser);
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
-        assertEquals("Please check your details.", response.getBody());
+        assertEquals("Invalid phone number format.", detail(response));
     }
 
     @Test
     void testGetUsersInDateRange_ValidDateRange() {
 
         UserService userService = mock(UserService.class);
-        UserController userController = new UserController(userService);
+        UserController userController = new UserController(userService, new ObjectMapper(), changeTracker);
         String startDate = "2024-01-01";
         String endDate = "2024-12-31";
         LocalDate start = LocalDate.parse(startDate);
         LocalDate end = LocalDate.parse(endDate);
-        List<User> expectedUsers = new ArrayList<>();
+        List<Map<String, Object>> expectedUsers = new ArrayList<>();
 
-        when(userService.getUsersInDateRange(start, end)).thenReturn(expectedUsers);
+        when(userService.getUserViewsInDateRange(start, end, null, 50, EnumSet.allOf(UserField.class))).thenReturn(expectedUsers);
 
-        ResponseEntity<List<User>> response = userController.getUsersInDateRange(startDate, endDate);
+        ResponseEntity<Object> response = userController.getUsersInDateRange(startDate, endDate, null, null, 50, false, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(expectedUsers, response.getBody());
+        UserPage<?> page = (UserPage<?>) response.getBody();
+        assertEquals(expectedUsers, page.getUsers());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testGetUsersInDateRange_FullPageReturnsNextCursor() {
+
+        LocalDate start = LocalDate.parse("2024-01-01");
+        LocalDate end = LocalDate.parse("2024-12-31");
+        BirthDateCursor after = new BirthDateCursor(LocalDate.parse("2024-02-01"), 3L);
+        Map<String, Object> user = Map.of("id", 9L, "dateOfBirth", LocalDate.parse("2024-03-01"));
+
+        when(userService.getUserViewsInDateRange(start, end, after, 1, EnumSet.of(UserField.ID))).thenReturn(List.of(user));
+
+        ResponseEntity<Object> response = userController.getUsersInDateRange("2024-01-01", "2024-12-31", "2024-02-01", 3L, 1, false, "id");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        UserPage<?> page = (UserPage<?>) response.getBody();
+        assertEquals(new BirthDateCursor(LocalDate.parse("2024-03-01"), 9L), page.getNextCursor());
+    }
+
+    @Test
+    void testGetUsersInDateRange_IncompleteCursor() {
+
+        ResponseEntity<Object> response = userController.getUsersInDateRange("2024-01-01", "2024-12-31", null, 3L, 50, false, null);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    void testGetChanges() throws Exception {
+
+        UserFeedPage page = new UserFeedPage(List.of(), 12L);
+        when(userService.getChanges(12L, 100, 25_000L)).thenReturn(CompletableFuture.completedFuture(page));
+
+        ResponseEntity<Object> response = userController.getChanges(12L, 100, 25).get();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(page, response.getBody());
+        assertEquals(HttpStatus.BAD_REQUEST, userController.getChanges(12L, 100, 26).get().getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, userController.getChanges(-1L, 100, 0).get().getStatusCode());
+    }
+
+    @Test
+    void testGetUserHistory() {
+
+        List<UserChange> history = List.of(new UserChange(7L, 1L, UserChange.Type.DELETED, null, "{}"));
+        when(userService.getUserHistory(1L, 5L, 50)).thenReturn(history);
+
+        ResponseEntity<Object> response = userController.getUserHistory(1L, 5L, 50);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(history, response.getBody());
+        assertEquals(HttpStatus.BAD_REQUEST, userController.getUserHistory(1L, null, 0).getStatusCode());
+    }
+
+    @Test
+    void testGetUsersInDateRange_CountOnly() {
+
+        LocalDate start = LocalDate.parse("2024-01-01");
+        LocalDate end = LocalDate.parse("2024-12-31");
+        when(userService.countUsersInDateRange(start, end)).thenReturn(12L);
+
+        ResponseEntity<Object> response = userController.getUsersInDateRange("2024-01-01", "2024-12-31", null, null, 50, true, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(Map.of("count", 12L), response.getBody());
+        verify(userService, never()).getUserViewsInDateRange(any(), any(), any(), anyInt(), any());
     }
 
     @Test
@@ -198,6 +528,10 @@ public class UserControllerTest {
         ResponseEntity<Object> responseEntity = globalExceptionHandler.handleHttpMessageNotReadable(
                                                              new HttpMessageNotReadableException(""));
         assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
-        assertEquals("Invalid date of birth format. Please use YYYY-MM-DD format.", responseEntity.getBody());
+        assertEquals("Invalid date of birth format. Please use YYYY-MM-DD format.", detail(responseEntity));
+    }
+
+    private static String detail(ResponseEntity<Object> response) {
+        return ((ProblemDetail) response.getBody()).getDetail();
     }
 }
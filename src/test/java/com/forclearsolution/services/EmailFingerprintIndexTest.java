@@ -0,0 +1,89 @@
+package com.forclearsolution.services;
+
+import com.forclearsolution.repositories.UserRepository;
+import com.forclearsolution.services.impl.EmailFingerprintIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EmailFingerprintIndexTest {
+
+    @Test
+    public void testMightContain_NormalizesEmails() {
+
+        EmailFingerprintIndex emailIndex = new EmailFingerprintIndex(true);
+        emailIndex.add(" John.Doe@Example.com");
+
+        assertTrue(emailIndex.mightContain("john.doe@example.com"));
+        assertFalse(emailIndex.mightContain("jane.doe@example.com"));
+    }
+
+    @Test
+    public void testAddAndRemove_NeverLosesRemainingEmails() {
+
+        EmailFingerprintIndex emailIndex = new EmailFingerprintIndex(true);
+        Set<String> expected = new HashSet<>();
+        Random random = new Random(42);
+
+        // enough churn to resize several times and to shift entries back across wrapped probe chains
+        for (int i = 0; i < 50_000; i++) {
+            String email = "user" + random.nextInt(20_000) + "@example.com";
+            if (random.nextInt(3) == 0) {
+                emailIndex.remove(email);
+                expected.remove(email);
+            } else {
+                emailIndex.add(email);
+                expected.add(email);
+            }
+        }
+
+        assertEquals(expected.size(), emailIndex.size());
+        for (String email : expected) {
+            assertTrue(emailIndex.mightContain(email), email);
+        }
+    }
+
+    @Test
+    public void testDisabledIndex_AlwaysDefersToDatabase() {
+
+        EmailFingerprintIndex emailIndex = new EmailFingerprintIndex(false);
+        emailIndex.add("john.doe@example.com");
+
+        assertTrue(emailIndex.mightContain("anyone@example.com"));
+        assertEquals(0, emailIndex.size());
+    }
+
+    @Test
+    public void testLoad_RetriesUntilTheEmailsAreRead() throws InterruptedException {
+
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.streamAllEmails())
+                .thenThrow(new DataAccessResourceFailureException("connection lost"))
+                .thenReturn(Stream.of("john.doe@example.com"));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        EmailFingerprintIndex emailIndex = new EmailFingerprintIndex(userRepository, mock(PlatformTransactionManager.class),
+                meterRegistry, true);
+
+        emailIndex.load();
+
+        // defers to the database until it is loaded
+        assertTrue(emailIndex.mightContain("anyone@example.com"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (emailIndex.mightContain("anyone@example.com") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(emailIndex.mightContain("anyone@example.com"));
+        assertTrue(emailIndex.mightContain("john.doe@example.com"));
+        assertEquals(1, meterRegistry.counter("users.background.failures", "task", "email-index-load").count());
+    }
+}
@@ -0,0 +1,90 @@
+package com.forclearsolution.services;
+
+import com.forclearsolution.models.BirthDateCursor;
+import com.forclearsolution.models.User;
+import com.forclearsolution.services.impl.ReactiveUserServiceImpl;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ReactiveUserServiceImplTest {
+
+    private static final int PAGE_SIZE = 500;
+
+    private final UserService userService = mock(UserService.class);
+
+    private final ReactiveUserService reactiveUserService = new ReactiveUserServiceImpl(userService);
+
+    @Test
+    void testFindUserById() {
+        User user = new User(1L, "test@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        when(userService.findUserById(1L)).thenReturn(Optional.of(user));
+
+        StepVerifier.create(reactiveUserService.findUserById(1L))
+                .expectNext(user)
+                .verifyComplete();
+    }
+
+    @Test
+    void testFindUserById_NotFoundIsEmpty() {
+        when(userService.findUserById(1L)).thenReturn(Optional.empty());
+
+        StepVerifier.create(reactiveUserService.findUserById(1L))
+                .verifyComplete();
+        verify(userService, never()).getUserById(any());
+    }
+
+    @Test
+    void testListUsers_FetchesPagesOnDemand() {
+        List<User> firstPage = users(1, PAGE_SIZE);
+        List<User> secondPage = users(PAGE_SIZE + 1, PAGE_SIZE);
+        List<User> thirdPage = users(2 * PAGE_SIZE + 1, 2);
+        when(userService.listUsers(null, PAGE_SIZE)).thenReturn(firstPage);
+        when(userService.listUsers((long) PAGE_SIZE, PAGE_SIZE)).thenReturn(secondPage);
+        when(userService.listUsers((long) 2 * PAGE_SIZE, PAGE_SIZE)).thenReturn(thirdPage);
+
+        StepVerifier.create(reactiveUserService.listUsers(), 1)
+                .expectNext(firstPage.get(0))
+                .then(() -> verify(userService, never()).listUsers((long) 2 * PAGE_SIZE, PAGE_SIZE))
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextCount(2 * PAGE_SIZE + 1)
+                .verifyComplete();
+
+        verify(userService, times(3)).listUsers(any(), eq(PAGE_SIZE));
+    }
+
+    @Test
+    void testGetUsersInDateRange_FollowsCursor() {
+        LocalDate start = LocalDate.of(1900, 1, 1);
+        LocalDate end = LocalDate.of(2000, 1, 1);
+        List<User> firstPage = users(1, PAGE_SIZE);
+        User last = firstPage.get(PAGE_SIZE - 1);
+        when(userService.getUsersInDateRange(start, end, null, PAGE_SIZE)).thenReturn(firstPage);
+        when(userService.getUsersInDateRange(start, end, new BirthDateCursor(last.getDateOfBirth(), last.getId()), PAGE_SIZE))
+                .thenReturn(Collections.emptyList());
+
+        StepVerifier.create(reactiveUserService.getUsersInDateRange(start, end))
+                .expectNextCount(PAGE_SIZE)
+                .verifyComplete();
+
+        verify(userService, times(2)).getUsersInDateRange(eq(start), eq(end), any(), eq(PAGE_SIZE));
+    }
+
+    private static List<User> users(int firstId, int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = firstId + i;
+            users.add(new User(id, "user" + id + "@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567"));
+        }
+        return users;
+    }
+}
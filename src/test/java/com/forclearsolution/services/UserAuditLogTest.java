@@ -0,0 +1,132 @@
+package com.forclearsolution.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.forclearsolution.models.User;
+import com.forclearsolution.models.UserChange;
+import com.forclearsolution.services.impl.UserAuditLog;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserAuditLogTest {
+
+    private HikariDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:audit;MODE=MySQL");
+        dataSource.setUsername("sa");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table user_audit (id bigint not null auto_increment, user_id bigint not null,"
+                + " change_type varchar(16) not null, changed_at datetime(6) not null, changes text not null, primary key (id))");
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    public void testHistory_RecordsFieldDiffs() throws Exception {
+
+        UserAuditLog auditLog = auditLog(1024, 1000);
+        User user = new User(1L, "john@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", null);
+        User updated = new User(1L, "john@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "lviv", null);
+
+        auditLog.recordCreated(user);
+        auditLog.recordUpdated(user, updated);
+        auditLog.recordUpdated(updated, updated);
+        auditLog.recordDeleted(1L, null);
+        auditLog.close();
+
+        List<UserChange> history = auditLog.history(1L, null, 10);
+        assertEquals(3, history.size());
+        assertEquals(UserChange.Type.CREATED, history.get(0).getType());
+        assertTrue(history.get(0).getChanges().contains("\"dateOfBirth\":{\"from\":null,\"to\":\"1990-01-01\"}"));
+        assertEquals("{\"address\":{\"from\":\"kyiv\",\"to\":\"lviv\"}}", history.get(1).getChanges());
+        assertEquals(UserChange.Type.DELETED, history.get(2).getType());
+        assertEquals(1, auditLog.history(1L, history.get(1).getId(), 10).size());
+    }
+
+    @Test
+    public void testRecord_InTransactionWaitsForCommit() throws Exception {
+
+        UserAuditLog auditLog = auditLog(1024, 1000);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            auditLog.recordDeleted(2L, null);
+            assertEquals(0, auditLog.pending());
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        auditLog.close();
+
+        assertEquals(1, auditLog.history(2L, null, 10).size());
+    }
+
+    @Test
+    public void testRecord_ConcurrentWritersLoseNothing() throws Exception {
+
+        // a buffer far smaller than the load, so writers keep waiting for the batch writer to free room
+        UserAuditLog auditLog = auditLog(64, 5_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            long userId = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    auditLog.recordDeleted(userId, null);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        auditLog.close();
+
+        assertEquals(4000, jdbcTemplate.queryForObject("select count(*) from user_audit", Long.class));
+        assertEquals(0.0, meterRegistry.get("users.audit.events").tag("outcome", "dropped").counter().count());
+        assertEquals(500, auditLog.history(3L, null, 1000).size());
+    }
+
+    @Test
+    public void testClose_LaterEventsAreWrittenDirectly() throws Exception {
+
+        UserAuditLog auditLog = auditLog(1024, 1000);
+        auditLog.close();
+
+        auditLog.recordDeleted(4L, null);
+
+        assertEquals(1, auditLog.history(4L, null, 10).size());
+    }
+
+    private UserAuditLog auditLog(int bufferSize, long offerTimeoutMillis) {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return new UserAuditLog(jdbcTemplate, objectMapper, meterRegistry, bufferSize, 50, 10, offerTimeoutMillis);
+    }
+}
@@ -0,0 +1,194 @@
+package com.forclearsolution.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.forclearsolution.models.User;
+import com.forclearsolution.models.UserChange;
+import com.forclearsolution.models.UserFeedPage;
+import com.forclearsolution.services.impl.UserChangeFeed;
+import com.forclearsolution.services.impl.UserChangeTracker;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserChangeFeedTest {
+
+    private HikariDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private UserChangeFeed changeFeed;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:outbox;MODE=MySQL");
+        dataSource.setUsername("sa");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table user_outbox (seq bigint not null auto_increment, user_id bigint not null,"
+                + " change_type varchar(16) not null, changed_at datetime(6) not null, payload text, primary key (seq))");
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        meterRegistry = new SimpleMeterRegistry();
+        changeFeed = new UserChangeFeed(jdbcTemplate, objectMapper, meterRegistry, 50, 1000, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        changeFeed.close();
+        dataSource.close();
+    }
+
+    @Test
+    public void testRead_ReturnsEventsInOrderAfterSince() {
+
+        User user = new User(1L, "john@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), null, null);
+        changeFeed.appendCreated(user);
+        user.setAddress("kyiv");
+        changeFeed.appendUpdated(user);
+        changeFeed.appendDeleted(1L);
+
+        UserFeedPage page = changeFeed.read(0, 10);
+
+        assertEquals(3, page.getEvents().size());
+        assertEquals(3, page.getNextSince());
+        assertEquals(UserChange.Type.UPDATED, page.getEvents().get(1).getType());
+        assertTrue(page.getEvents().get(1).getUser().contains("\"address\":\"kyiv\""));
+        assertNull(page.getEvents().get(2).getUser());
+        assertEquals(1, changeFeed.read(2, 10).getEvents().size());
+        assertEquals(2, changeFeed.read(0, 2).getNextSince());
+        assertEquals(1, changeFeed.oldest());
+    }
+
+    @Test
+    public void testHolds_CountsTheFencedEventsInThisSnapshot() {
+
+        changeFeed.appendDeleted(1L);
+        changeFeed.appendDeleted(2L);
+
+        assertTrue(changeFeed.holds(new UserChangeTracker.Fence(1, 0, 2, 2)));
+        assertFalse(changeFeed.holds(new UserChangeTracker.Fence(1, 0, 3, 3)));
+    }
+
+    @Test
+    public void testRead_StopsAtGapUntilItIsConfirmedEmpty() throws Exception {
+
+        insert(1, Instant.now());
+        insert(3, Instant.now());
+
+        UserFeedPage page = changeFeed.read(0, 10);
+        assertEquals(1, page.getEvents().size());
+        assertEquals(1, page.getNextSince());
+        assertEquals(1, changeFeed.read(1, 10).getNextSince());
+        assertEquals(0, meterRegistry.counter("users.feed.gaps.abandoned").count());
+
+        Thread.sleep(1100);
+        page = changeFeed.read(0, 10);
+        assertEquals(2, page.getEvents().size());
+        assertEquals(3, page.getNextSince());
+        assertEquals(1, changeFeed.read(1, 10).getEvents().size());
+        assertEquals(1, meterRegistry.counter("users.feed.gaps.abandoned").count());
+    }
+
+    @Test
+    public void testRead_EventCommittedIntoAGapIsNotSkipped() throws Exception {
+
+        insert(1, Instant.now());
+        insert(3, Instant.now());
+        assertEquals(1, changeFeed.read(0, 10).getNextSince());
+
+        // the reader has been waiting longer than the gap wait by the time the missing event commits
+        Thread.sleep(1100);
+        insert(2, Instant.now());
+
+        UserFeedPage page = changeFeed.read(0, 10);
+        assertEquals(3, page.getEvents().size());
+        assertEquals(2L, page.getEvents().get(1).getSeq());
+        assertEquals(0, meterRegistry.counter("users.feed.gaps.abandoned").count());
+    }
+
+    @Test
+    public void testRead_GapIsTimedFromTheEventAfterIt() {
+
+        // the reader just arrived, but the event after the hole was written long ago
+        insert(1, Instant.now().minusSeconds(60));
+        insert(3, Instant.now().minusSeconds(60));
+
+        assertEquals(3, changeFeed.read(0, 10).getNextSince());
+        assertEquals(1, meterRegistry.counter("users.feed.gaps.abandoned").count());
+    }
+
+    @Test
+    public void testPurge_RemovesEventsOlderThanRetentionAndReadsPastThem() throws Exception {
+
+        insert(1, Instant.now().minus(2, ChronoUnit.HOURS));
+        insert(2, Instant.now().minus(2, ChronoUnit.HOURS));
+        insert(3, Instant.now());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (jdbcTemplate.queryForObject("select count(*) from user_outbox", Long.class) > 1) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(20);
+        }
+
+        UserFeedPage page = changeFeed.read(0, 10);
+        assertEquals(1, page.getEvents().size());
+        assertEquals(3, page.getNextSince());
+    }
+
+    @Test
+    public void testAppend_RolledBackTransactionLeavesNoEvent() {
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transactionTemplate.executeWithoutResult(status -> {
+            changeFeed.appendDeleted(1L);
+            status.setRollbackOnly();
+        });
+
+        assertTrue(changeFeed.read(0, 10).getEvents().isEmpty());
+    }
+
+    @Test
+    public void testPoll_WaitsForNextCommit() throws Exception {
+
+        CompletableFuture<UserFeedPage> result = changeFeed.poll(0, 10, 10_000);
+        assertFalse(result.isDone());
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transactionTemplate.executeWithoutResult(status -> changeFeed.appendDeleted(7L));
+
+        UserFeedPage page = result.get(5, TimeUnit.SECONDS);
+        assertEquals(1, page.getEvents().size());
+        assertEquals(7L, page.getEvents().get(0).getUserId());
+    }
+
+    @Test
+    public void testPoll_TimesOutWithEmptyPage() throws Exception {
+
+        UserFeedPage page = changeFeed.poll(4, 10, 100).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(), page.getEvents());
+        assertEquals(4, page.getNextSince());
+    }
+
+    private void insert(long seq, Instant changedAt) {
+        jdbcTemplate.update("insert into user_outbox (seq, user_id, change_type, changed_at) values (?, 1, 'DELETED', ?)",
+                seq, Timestamp.from(changedAt));
+    }
+}
@@ -0,0 +1,198 @@
+package com.forclearsolution.services;
+
+import com.forclearsolution.models.UserChange;
+import com.forclearsolution.models.UserFeedEvent;
+import com.forclearsolution.models.UserFeedPage;
+import com.forclearsolution.services.impl.UserChangeFeed;
+import com.forclearsolution.services.impl.UserChangeTracker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class UserChangeTrackerTest {
+
+    @Test
+    public void testRecordWrite_WithoutTransactionBumpsImmediately() {
+
+        UserChangeTracker changeTracker = new UserChangeTracker();
+        UserChangeTracker.Generation before = changeTracker.current();
+
+        changeTracker.recordWrite();
+
+        UserChangeTracker.Generation after = changeTracker.current();
+        assertEquals(before.number() + 1, after.number());
+        assertNotEquals(before.etag(), after.etag());
+        assertTrue(after.etag().startsWith("W/\""));
+    }
+
+    @Test
+    public void testRecordWrite_InTransactionBumpsAfterCommit() {
+
+        UserChangeTracker changeTracker = new UserChangeTracker();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            changeTracker.recordWrite();
+            assertEquals(0, changeTracker.current().number());
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+            assertEquals(1, changeTracker.current().number());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testWritesOfOtherInstancesBumpOnceSeenInTheFeed() throws InterruptedException {
+
+        UserChangeFeed changeFeed = mock(UserChangeFeed.class);
+        when(changeFeed.latest()).thenReturn(1500L);
+        when(changeFeed.read(anyLong(), anyInt())).thenAnswer(invocation -> new UserFeedPage(List.of(), invocation.getArgument(0)));
+        when(changeFeed.read(500L, 1000)).thenReturn(new UserFeedPage(
+                List.of(new UserFeedEvent(1501L, 7L, UserChange.Type.UPDATED, Instant.now(), "{}")), 1501L));
+
+        UserChangeTracker changeTracker = new UserChangeTracker(changeFeed, new SimpleMeterRegistry(), 10);
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (changeTracker.current().number() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, changeTracker.current().number());
+
+            verify(changeFeed, timeout(5000).atLeastOnce()).read(1501L, 1000);
+            assertEquals(1, changeTracker.current().number());
+        } finally {
+            changeTracker.close();
+        }
+    }
+
+    @Test
+    public void testListenersGetChangedUsersAfterTheBump() {
+
+        UserChangeTracker changeTracker = new UserChangeTracker();
+        List<Long> generationsSeen = new ArrayList<>();
+        List<Collection<Long>> changed = new ArrayList<>();
+        changeTracker.onWrite(ids -> {
+            generationsSeen.add(changeTracker.current().number());
+            changed.add(ids);
+        });
+
+        changeTracker.recordWrite();
+        changeTracker.recordWrite(7L);
+
+        assertEquals(List.of(List.of(7L)), changed);
+        assertEquals(List.of(2L), generationsSeen);
+    }
+
+    @Test
+    public void testWritesOfOtherInstancesNotifyTheirUsers() throws InterruptedException {
+
+        UserChangeFeed changeFeed = mock(UserChangeFeed.class);
+        when(changeFeed.latest()).thenReturn(0L);
+        AtomicBoolean written = new AtomicBoolean();
+        when(changeFeed.read(anyLong(), anyInt())).thenAnswer(invocation -> new UserFeedPage(List.of(), invocation.getArgument(0)));
+        when(changeFeed.read(0L, 1000)).thenAnswer(invocation -> written.get()
+                ? new UserFeedPage(List.of(
+                        new UserFeedEvent(1L, 7L, UserChange.Type.UPDATED, Instant.now(), "{}"),
+                        new UserFeedEvent(2L, 9L, UserChange.Type.DELETED, Instant.now(), null),
+                        new UserFeedEvent(3L, 7L, UserChange.Type.UPDATED, Instant.now(), "{}")), 3L)
+                : new UserFeedPage(List.of(), 0L));
+
+        List<Collection<Long>> changed = new CopyOnWriteArrayList<>();
+        UserChangeTracker changeTracker = new UserChangeTracker(changeFeed, new SimpleMeterRegistry(), 10);
+        try {
+            changeTracker.onWrite(changed::add);
+            written.set(true);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (changed.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertEquals(List.of(List.of(7L, 9L)), changed.stream().map(List::copyOf).toList());
+            assertEquals(1, changeTracker.current().number());
+        } finally {
+            changeTracker.close();
+        }
+    }
+
+    @Test
+    public void testFence_CoversAGenerationOnceThePollerReadItsWritesBack() throws InterruptedException {
+
+        UserChangeFeed changeFeed = mock(UserChangeFeed.class);
+        AtomicBoolean written = new AtomicBoolean();
+        when(changeFeed.latest()).thenAnswer(invocation -> written.get() ? 3L : 2L);
+        when(changeFeed.read(anyLong(), anyInt())).thenAnswer(invocation -> {
+            long since = invocation.getArgument(0);
+            List<UserFeedEvent> events = new ArrayList<>();
+            for (long seq = since + 1; seq <= (written.get() ? 3 : 2); seq++) {
+                events.add(new UserFeedEvent(seq, 7L, UserChange.Type.UPDATED, Instant.now(), "{}"));
+            }
+            return new UserFeedPage(events, since + events.size());
+        });
+
+        UserChangeTracker changeTracker = new UserChangeTracker(changeFeed, new SimpleMeterRegistry(), 10);
+        try {
+            assertEquals(new UserChangeTracker.Fence(1, 0, 2, 2), awaitFence(changeTracker, 1));
+
+            // this instance's own write, counted at commit but not read back from the outbox yet
+            changeTracker.recordWrite(7L);
+            assertNull(changeTracker.fence());
+            written.set(true);
+
+            assertEquals(new UserChangeTracker.Fence(3, 2, 3, 1), awaitFence(changeTracker, 3));
+        } finally {
+            changeTracker.close();
+        }
+    }
+
+    @Test
+    public void testPollFailuresAreCountedAndRetried() throws InterruptedException {
+
+        UserChangeFeed changeFeed = mock(UserChangeFeed.class);
+        when(changeFeed.latest()).thenThrow(new DataAccessResourceFailureException("connection lost")).thenReturn(0L);
+        when(changeFeed.read(anyLong(), anyInt())).thenAnswer(invocation -> new UserFeedPage(List.of(), invocation.getArgument(0)));
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UserChangeTracker changeTracker = new UserChangeTracker(changeFeed, meterRegistry, 10);
+        try {
+            verify(changeFeed, timeout(5000).atLeast(2)).latest();
+            assertEquals(1, meterRegistry.counter("users.background.failures", "task", "generation-poll").count());
+        } finally {
+            changeTracker.close();
+        }
+    }
+
+    @Test
+    public void testFence_WithoutFeedNeedsNoEvents() {
+
+        UserChangeTracker changeTracker = new UserChangeTracker();
+        changeTracker.recordWrite(7L);
+
+        assertEquals(new UserChangeTracker.Fence(1, 0, 0, 0), changeTracker.fence());
+    }
+
+    private static UserChangeTracker.Fence awaitFence(UserChangeTracker changeTracker, long generation) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        UserChangeTracker.Fence fence = changeTracker.fence();
+        while ((fence == null || fence.generation() != generation) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            fence = changeTracker.fence();
+        }
+        return fence;
+    }
+}
@@ -0,0 +1,206 @@
+package com.forclearsolution.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.forclearsolution.models.ExportFormat;
+import com.forclearsolution.models.ExportJob;
+import com.forclearsolution.repositories.UserRepository;
+import com.forclearsolution.services.impl.UserExportServiceImpl;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class UserExportServiceImplTest {
+
+    @TempDir
+    Path exportDirectory;
+
+    private UserRepository userRepository;
+
+    private ObjectMapper objectMapper;
+
+    private UserExportServiceImpl userExportService;
+
+    @BeforeEach
+    public void setUp() {
+        userRepository = mock(UserRepository.class);
+        objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        userExportService = new UserExportServiceImpl(userRepository, objectMapper, exportDirectory.toString(), 2, 1_000_000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        userExportService.shutdown();
+    }
+
+    @Test
+    public void testExportNdjson_WritesEveryChunk() throws Exception {
+
+        when(userRepository.findViews(any(), eq(0L), eq(2))).thenReturn(List.of(row(1L, "a@x.com"), row(2L, "b@x.com")));
+        when(userRepository.findViews(any(), eq(2L), eq(2))).thenReturn(List.of(row(3L, "c@x.com")));
+
+        ExportJob job = awaitFinished(userExportService.startExport(ExportFormat.NDJSON));
+
+        assertEquals(ExportJob.Status.COMPLETED, job.getStatus());
+        assertEquals(3L, job.getRowsWritten());
+        assertEquals(3L, job.getLastId());
+        List<String> lines = readLines(job);
+        assertEquals(3, lines.size());
+        assertEquals("a@x.com", objectMapper.readTree(lines.get(0)).get("email").asText());
+        assertEquals("1990-01-01", objectMapper.readTree(lines.get(2)).get("dateOfBirth").asText());
+    }
+
+    @Test
+    public void testExportCsv_QuotesSpecialCharacters() throws Exception {
+
+        Map<String, Object> user = row(1L, "a@x.com");
+        user.put("address", "Kyiv, \"Center\"");
+        when(userRepository.findViews(any(), eq(0L), eq(2))).thenReturn(List.of(user));
+
+        ExportJob job = awaitFinished(userExportService.startExport(ExportFormat.CSV));
+
+        List<String> lines = readLines(job);
+        assertEquals("id,email,firstName,lastName,dateOfBirth,address,phoneNumber", lines.get(0));
+        assertEquals("1,a@x.com,John,Doe,1990-01-01,\"Kyiv, \"\"Center\"\"\",", lines.get(1));
+    }
+
+    @Test
+    public void testExportColumnar_WritesHeaderAndBlock() throws Exception {
+
+        when(userRepository.findViews(any(), eq(0L), eq(2))).thenReturn(List.of(row(7L, "a@x.com")));
+
+        ExportJob job = awaitFinished(userExportService.startExport(ExportFormat.COLUMNAR));
+
+        try (DataInputStream data = new DataInputStream(new GZIPInputStream(Files.newInputStream(Paths.get(job.getFile()))))) {
+            assertArrayEquals(new byte[]{'U', 'S', 'R', 'C', 1}, data.readNBytes(5));
+            int columns = data.readShort();
+            for (int i = 0; i < columns; i++) {
+                data.readUTF();
+            }
+            assertEquals(1, data.readInt());
+            assertEquals(7L, data.readLong());
+        }
+    }
+
+    @Test
+    public void testExport_EmptyTableStillWritesHeader() throws Exception {
+
+        when(userRepository.findViews(any(), anyLong(), anyInt())).thenReturn(Collections.emptyList());
+
+        ExportJob job = awaitFinished(userExportService.startExport(ExportFormat.CSV));
+
+        assertEquals(ExportJob.Status.COMPLETED, job.getStatus());
+        assertEquals(List.of("id,email,firstName,lastName,dateOfBirth,address,phoneNumber"), readLines(job));
+    }
+
+    @Test
+    public void testExportJob_ShowsDownloadUrlInsteadOfServerPath() throws Exception {
+
+        when(userRepository.findViews(any(), anyLong(), anyInt())).thenReturn(Collections.emptyList());
+
+        ExportJob job = awaitFinished(userExportService.startExport(ExportFormat.CSV));
+
+        JsonNode json = objectMapper.valueToTree(job);
+        assertFalse(json.has("file"));
+        assertEquals("/users/exports/" + job.getJobId() + "/file", json.get("downloadUrl").asText());
+    }
+
+    @Test
+    public void testResumeExport_ContinuesFromLastId() throws Exception {
+
+        when(userRepository.findViews(any(), eq(0L), eq(2))).thenReturn(List.of(row(1L, "a@x.com"), row(2L, "b@x.com")));
+        when(userRepository.findViews(any(), eq(2L), eq(2)))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"))
+                .thenReturn(List.of(row(3L, "c@x.com")));
+
+        ExportJob failed = awaitFinished(userExportService.startExport(ExportFormat.NDJSON));
+        assertEquals(ExportJob.Status.FAILED, failed.getStatus());
+        assertEquals(2L, failed.getLastId());
+
+        // a fresh instance only knows about the job through its checkpoint file
+        userExportService.shutdown();
+        userExportService = new UserExportServiceImpl(userRepository, objectMapper, exportDirectory.toString(), 2, 1_000_000);
+        ExportJob resumed = awaitFinished(userExportService.resumeExport(failed.getJobId()));
+
+        assertEquals(ExportJob.Status.COMPLETED, resumed.getStatus());
+        assertEquals(3L, resumed.getRowsWritten());
+        List<String> lines = readLines(resumed);
+        assertEquals(3, lines.size());
+        assertEquals("c@x.com", objectMapper.readTree(lines.get(2)).get("email").asText());
+    }
+
+    @Test
+    public void testResumeExport_CompletedJobIsRejected() throws Exception {
+
+        when(userRepository.findViews(any(), anyLong(), anyInt())).thenReturn(Collections.emptyList());
+        ExportJob job = awaitFinished(userExportService.startExport(ExportFormat.NDJSON));
+
+        assertThrows(IllegalArgumentException.class, () -> userExportService.resumeExport(job.getJobId()));
+    }
+
+    @Test
+    public void testGetExport_UnknownOrMalformedId() {
+
+        assertThrows(EntityNotFoundException.class, () -> userExportService.getExport("00000000-0000-0000-0000-000000000000"));
+        assertThrows(EntityNotFoundException.class, () -> userExportService.getExport("../etc/passwd"));
+    }
+
+    private static Map<String, Object> row(Long id, String email) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", id);
+        row.put("email", email);
+        row.put("firstName", "John");
+        row.put("lastName", "Doe");
+        row.put("dateOfBirth", LocalDate.of(1990, 1, 1));
+        row.put("address", null);
+        row.put("phoneNumber", null);
+        return row;
+    }
+
+    private ExportJob awaitFinished(ExportJob job) throws InterruptedException {
+        for (int i = 0; i < 500 && job.getStatus() == ExportJob.Status.RUNNING; i++) {
+            Thread.sleep(10);
+        }
+        return job;
+    }
+
+    private static List<String> readLines(ExportJob job) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(Paths.get(job.getFile())))) {
+            in.transferTo(content);
+        }
+        List<String> lines = new ArrayList<>(List.of(content.toString(StandardCharsets.UTF_8).split("\n")));
+        lines.removeIf(String::isEmpty);
+        return lines;
+    }
+}
@@ -0,0 +1,163 @@
+package com.forclearsolution.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.forclearsolution.models.BatchRowResult;
+import com.forclearsolution.models.ImportJob;
+import com.forclearsolution.models.User;
+import com.forclearsolution.services.impl.UserImportServiceImpl;
+import com.forclearsolution.validators.UserValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class UserImportServiceImplTest {
+
+    @TempDir
+    Path importDirectory;
+
+    private UserService userService;
+
+    private final List<User> inserted = new ArrayList<>();
+
+    private UserImportServiceImpl userImportService;
+
+    @BeforeEach
+    public void setUp() {
+        userService = mock(UserService.class);
+        // reports an email as a duplicate once it has been inserted, like the database would
+        when(userService.createValidatedUsers(anyList(), anyInt())).thenAnswer(invocation -> {
+            List<User> users = invocation.getArgument(0);
+            List<BatchRowResult> results = new ArrayList<>();
+            for (User user : users) {
+                boolean duplicate = inserted.stream().anyMatch(existing -> existing.getEmail().equals(user.getEmail()));
+                if (duplicate) {
+                    results.add(new BatchRowResult(0, user.getEmail(), BatchRowResult.Status.DUPLICATE, null, "This user already exists!"));
+                } else {
+                    inserted.add(user);
+                    results.add(new BatchRowResult(0, user.getEmail(), BatchRowResult.Status.CREATED, (long) inserted.size(), null));
+                }
+            }
+            return results;
+        });
+        userImportService = new UserImportServiceImpl(userService, new UserValidator(18),
+                new ObjectMapper().registerModule(new JavaTimeModule()), new SimpleMeterRegistry(),
+                importDirectory.toString(), 2, 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        userImportService.shutdown();
+    }
+
+    @Test
+    public void testImportCsv_InsertsValidRowsAndRejectsTheRest() throws Exception {
+
+        Files.writeString(importDirectory.resolve("users.csv"), String.join("\r\n",
+                "email,firstName,lastName,dateOfBirth,address",
+                "a@x.com,Ann,Lee,1990-01-01,\"Kyiv, \"\"Center\"\"\"",
+                "bad-email,Bob,Lee,1990-01-01,",
+                "",
+                "c@x.com,Cid,Lee,1990-13-01,",
+                "a@x.com,Ann,Again,1991-01-01,",
+                "d@x.com,Dan,Lee,1985-05-05,"));
+
+        ImportJob job = awaitFinished(userImportService.startImport("users.csv"));
+
+        assertEquals(ImportJob.Status.COMPLETED, job.getStatus(), job.getMessage());
+        assertEquals(5, job.getRowsRead());
+        assertEquals(2, job.getCreated());
+        assertEquals(1, job.getDuplicates());
+        assertEquals(2, job.getRejected());
+        assertEquals("Kyiv, \"Center\"", inserted.get(0).getAddress());
+        assertNull(inserted.get(0).getPhoneNumber());
+
+        List<String> rejected = Files.readAllLines(Paths.get(job.getRejectedFile()));
+        assertEquals("line,email,reason", rejected.get(0));
+        assertEquals("3,\"bad-email\",\"Invalid email format.\"", rejected.get(1));
+        assertEquals("5,,\"Invalid date of birth format. Please use YYYY-MM-DD format.\"", rejected.get(2));
+        assertEquals("6,\"a@x.com\",\"This user already exists!\"", rejected.get(3));
+    }
+
+    @Test
+    public void testImportNdjson_IgnoresIdsAndRejectsMalformedRows() throws Exception {
+
+        Files.writeString(importDirectory.resolve("users.ndjson"), String.join("\n",
+                "{\"id\":99,\"email\":\"a@x.com\",\"firstName\":\"Ann\",\"lastName\":\"Lee\",\"dateOfBirth\":\"1990-01-01\"}",
+                "{\"email\":",
+                "{\"email\":\"b@x.com\",\"firstName\":\"Bob\",\"lastName\":\"Lee\",\"dateOfBirth\":\"1990-01-01\"}",
+                ""));
+
+        ImportJob job = awaitFinished(userImportService.startImport("users.ndjson"));
+
+        assertEquals(ImportJob.Status.COMPLETED, job.getStatus(), job.getMessage());
+        assertEquals(2, job.getCreated());
+        assertEquals(1, job.getRejected());
+        assertNull(inserted.get(0).getId());
+    }
+
+    @Test
+    public void testImportJob_ShowsRejectedUrlInsteadOfServerPaths() throws Exception {
+
+        Files.writeString(importDirectory.resolve("users.csv"), "email,firstName,lastName,dateOfBirth\nbad-email,Bob,Lee,1990-01-01\n");
+
+        ImportJob job = awaitFinished(userImportService.startImport("users.csv"));
+
+        JsonNode json = new ObjectMapper().valueToTree(job);
+        assertFalse(json.has("file"));
+        assertFalse(json.has("rejectedFile"));
+        assertEquals("/users/imports/" + job.getJobId() + "/rejected", json.get("rejectedUrl").asText());
+    }
+
+    @Test
+    public void testImportCsv_UnknownColumnFailsTheJob() throws Exception {
+
+        Files.writeString(importDirectory.resolve("users.csv"), "email,password\na@x.com,secret\n");
+
+        ImportJob job = awaitFinished(userImportService.startImport("users.csv"));
+
+        assertEquals(ImportJob.Status.FAILED, job.getStatus());
+        assertTrue(job.getMessage().endsWith("Unknown field: password"));
+    }
+
+    @Test
+    public void testStartImport_RejectsFilesOutsideTheImportDirectory() throws IOException {
+
+        Files.writeString(importDirectory.resolve("users.txt"), "");
+
+        assertThrows(IllegalArgumentException.class, () -> userImportService.startImport("../users.csv"));
+        assertThrows(IllegalArgumentException.class, () -> userImportService.startImport("missing.csv"));
+        assertThrows(IllegalArgumentException.class, () -> userImportService.startImport("users.txt"));
+    }
+
+    @Test
+    public void testGetImport_UnknownOrMalformedId() {
+
+        assertThrows(EntityNotFoundException.class, () -> userImportService.getImport("00000000-0000-0000-0000-000000000000"));
+        assertThrows(EntityNotFoundException.class, () -> userImportService.getImport("../etc/passwd"));
+    }
+
+    private ImportJob awaitFinished(ImportJob job) throws InterruptedException {
+        for (int i = 0; i < 500 && job.getStatus() == ImportJob.Status.RUNNING; i++) {
+            Thread.sleep(10);
+        }
+        return job;
+    }
+}
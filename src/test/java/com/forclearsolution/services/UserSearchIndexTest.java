@@ -0,0 +1,185 @@
+package com.forclearsolution.services;
+
+import com.forclearsolution.models.UserChange;
+import com.forclearsolution.models.UserFeedEvent;
+import com.forclearsolution.models.UserFeedPage;
+import com.forclearsolution.repositories.UserRepository;
+import com.forclearsolution.services.impl.UserChangeFeed;
+import com.forclearsolution.services.impl.UserChangeTracker;
+import com.forclearsolution.services.impl.UserSearchIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class UserSearchIndexTest {
+
+    @TempDir
+    Path directory;
+
+    private UserRepository userRepository;
+
+    private UserChangeFeed changeFeed;
+
+    private UserSearchIndex searchIndex;
+
+    // the users table as the index would read it, by id
+    private final Map<Long, Map<String, Object>> rows = new HashMap<>();
+
+    // the outbox, one event per seq starting at 1
+    private final List<UserFeedEvent> events = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        userRepository = mock(UserRepository.class);
+        changeFeed = mock(UserChangeFeed.class);
+        when(userRepository.findViewsByIds(any(), anyCollection())).thenAnswer(invocation -> {
+            List<Map<String, Object>> found = new ArrayList<>();
+            for (Long id : invocation.<Collection<Long>>getArgument(1)) {
+                if (rows.containsKey(id)) {
+                    found.add(rows.get(id));
+                }
+            }
+            return found;
+        });
+        when(changeFeed.read(anyLong(), anyInt())).thenAnswer(invocation -> {
+            long since = invocation.getArgument(0);
+            List<UserFeedEvent> page = events.subList((int) since, events.size());
+            return new UserFeedPage(List.copyOf(page), events.size());
+        });
+
+        searchIndex = newIndex();
+        searchIndex.rebuild();
+        write(1L, "john.doe@example.com", "John", "Doe", "Kyiv, Khreshchatyk 1");
+        write(2L, "jane@example.com", "Jane", "Johnson", "Lviv");
+        write(3L, "bob@example.com", "Bob", "Smith", null);
+        searchIndex.catchUp();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        searchIndex.close();
+    }
+
+    @Test
+    public void testSearch_MatchesWordPrefixesAcrossFields() {
+
+        assertEquals(List.of(1L, 2L), searchIndex.search("jo", 0, 10));
+        assertEquals(List.of(1L), searchIndex.search("KHRESH", 0, 10));
+        assertEquals(List.of(1L), searchIndex.search("john.d", 0, 10));
+        assertEquals(List.of(3L), searchIndex.search("bob@ex", 0, 10));
+        assertEquals(List.of(), searchIndex.search("kyiv bob", 0, 10));
+    }
+
+    @Test
+    public void testSearch_PagesById() {
+
+        assertEquals(List.of(1L), searchIndex.search("example", 0, 1));
+        assertEquals(List.of(2L, 3L), searchIndex.search("example", 1, 10));
+    }
+
+    @Test
+    public void testCatchUp_AppliesChangesOfEveryInstanceFromTheFeed() {
+
+        write(2L, "jane@example.com", "Jane", "Miller", "Lviv");
+        rows.remove(1L);
+        events.add(new UserFeedEvent((long) events.size() + 1, 1L, UserChange.Type.DELETED, Instant.now(), null));
+
+        searchIndex.catchUp();
+
+        assertEquals(List.of(), searchIndex.search("jo", 0, 10));
+        assertEquals(List.of(2L), searchIndex.search("mil", 0, 10));
+    }
+
+    @Test
+    public void testCatchUp_OlderEventsIndexTheCurrentRow() {
+
+        write(2L, "jane@example.com", "Jane", "Miller", "Lviv");
+        write(2L, "jane@example.com", "Jane", "Novak", "Lviv");
+
+        searchIndex.catchUp();
+
+        assertEquals(List.of(), searchIndex.search("mil", 0, 10));
+        assertEquals(List.of(2L), searchIndex.search("nov", 0, 10));
+    }
+
+    @Test
+    public void testRestart_CatchesUpFromTheCommittedSeq() throws IOException {
+
+        searchIndex.close();
+        write(4L, "olena@example.com", "Olena", "Shevchenko", null);
+        when(changeFeed.oldest()).thenReturn(1L);
+        searchIndex = newIndex();
+
+        searchIndex.load();
+
+        assertEquals(List.of(4L), awaitSearch("shev"));
+        assertEquals(List.of(3L), searchIndex.search("bob", 0, 10));
+    }
+
+    @Test
+    public void testRestart_RebuildsWhenTheFeedPurgedEventsItMissed() throws IOException {
+
+        searchIndex.close();
+        rows.clear();
+        rows.put(7L, row(7L, "olena@example.com", "Olena", "Shevchenko", null));
+        when(userRepository.findViews(any(), eq(0L), anyInt())).thenReturn(List.of(rows.get(7L)));
+        when(changeFeed.oldest()).thenReturn(100L);
+        searchIndex = newIndex();
+
+        searchIndex.load();
+
+        assertEquals(List.of(7L), awaitSearch("shev"));
+        assertEquals(List.of(), searchIndex.search("bob", 0, 10));
+    }
+
+    private UserSearchIndex newIndex() throws IOException {
+        return new UserSearchIndex(userRepository, changeFeed, new UserChangeTracker(), new SimpleMeterRegistry(),
+                directory.toString(), 10);
+    }
+
+    private void write(Long id, String email, String firstName, String lastName, String address) {
+        rows.put(id, row(id, email, firstName, lastName, address));
+        events.add(new UserFeedEvent((long) events.size() + 1, id, UserChange.Type.UPDATED, Instant.now(), "{}"));
+    }
+
+    private static Map<String, Object> row(Long id, String email, String firstName, String lastName, String address) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", id);
+        row.put("email", email);
+        row.put("firstName", firstName);
+        row.put("lastName", lastName);
+        row.put("address", address);
+        return row;
+    }
+
+    private List<Long> awaitSearch(String query) {
+        long deadline = System.currentTimeMillis() + 5000;
+        List<Long> ids = searchIndex.search(query, 0, 10);
+        while (ids.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+            ids = searchIndex.search(query, 0, 10);
+        }
+        return ids;
+    }
+}
@@ -1,27 +1,60 @@
 package com.forclearsolution.services;
 
 import com.forclearsolution.exceptions.DateOfBirthException;
+import com.forclearsolution.models.BatchRowResult;
+import com.forclearsolution.models.BirthDateCursor;
 import com.forclearsolution.models.User;
+import com.forclearsolution.models.UserField;
+import com.forclearsolution.models.UserPage;
+import com.forclearsolution.models.UserResult;
 import com.forclearsolution.repositories.UserRepository;
+import com.forclearsolution.services.impl.EmailFingerprintIndex;
+import com.forclearsolution.services.impl.UserAuditLog;
+import com.forclearsolution.services.impl.UserCacheLoader;
+import com.forclearsolution.services.impl.UserChangeFeed;
+import com.forclearsolution.services.impl.UserChangeTracker;
+import com.forclearsolution.services.impl.UserInserter;
+import com.forclearsolution.services.impl.UserSearchIndex;
 import com.forclearsolution.services.impl.UserServiceImpl;
+import com.forclearsolution.validators.UserValidator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.lang.reflect.Field;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -33,7 +66,33 @@ public class UserServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
-    @InjectMocks
+    @Mock
+    private EntityManager entityManager;
+
+    @Spy
+    private UserValidator userValidator = new UserValidator(18);
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager(UserServiceImpl.USERS_CACHE, UserServiceImpl.USER_PAGES_CACHE);
+
+    @Spy
+    private EmailFingerprintIndex emailIndex = new EmailFingerprintIndex(false);
+
+    @Mock
+    private UserSearchIndex searchIndex;
+
+    @Spy
+    private UserChangeTracker changeTracker = new UserChangeTracker();
+
+    @Mock
+    private UserAuditLog auditLog;
+
+    @Mock
+    private UserChangeFeed changeFeed;
+
     private UserServiceImpl userService;
 
     @Value("${minAgeForRegistration}")
@@ -42,6 +101,7 @@ public class UserServiceImplTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        userService = userService(emailIndex);
         Field field;
         try {
             field = UserServiceImplTest.class.getDeclaredField("minAgeForRegistration");
@@ -61,10 +121,11 @@ public class UserServiceImplTest {
         user.setLastName("Doe");
         user.setDateOfBirth(LocalDate.of(1990, 1, 1));
 
-        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(new User()));
+        when(userRepository.saveAndFlush(user)).thenThrow(new DataIntegrityViolationException("ux_users_email"));
 
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> userService.createUser(user));
         assertEquals("This user already exists!", exception.getMessage());
+        verify(changeFeed, never()).appendCreated(any(User.class));
     }
 
     @Test
@@ -129,6 +190,17 @@ public class UserServiceImplTest {
     }
 
 
+    @Test
+    void testCreateUser_RecordsValidationFailureReason() {
+
+        User user = new User(null, "invalid-email", "Tom", "Test", LocalDate.of(1990, 1, 1), "kyiv", "123456");
+
+        assertThrows(IllegalArgumentException.class, () -> userService.createUser(user));
+
+        assertEquals(1.0, meterRegistry.counter("users.validation.failures", "reason", "Invalid email format.").count());
+        assertEquals(1.0, meterRegistry.counter("users.validation.failures", "reason", "Invalid phone number format.").count());
+    }
+
     @Test
     void testCreateUser_InvalidPhoneNumberFormat() {
         User user = new User();
@@ -171,6 +243,189 @@ public class UserServiceImplTest {
         }
     }
 
+    @Test
+    void testCreateUsers_ReportsEachRow() {
+
+        User valid = new User(null, "new@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+        User invalid = new User(null, "invalid-email", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+        User existing = new User(null, "existing@example.com", "Jane", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+        User repeated = new User(null, "new@example.com", "Jim", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+
+        when(userRepository.findExistingEmails(any())).thenReturn(List.of("existing@example.com"));
+        when(userRepository.saveAll(any())).thenAnswer(invocation -> {
+            valid.setId(7L);
+            return List.of(valid);
+        });
+
+        List<BatchRowResult> results = userService.createUsers(List.of(valid, invalid, existing, repeated), 10);
+
+        assertEquals(4, results.size());
+        assertEquals(10, results.get(0).getIndex());
+        assertEquals(BatchRowResult.Status.CREATED, results.get(0).getStatus());
+        assertEquals(7L, results.get(0).getId());
+        assertEquals(BatchRowResult.Status.INVALID, results.get(1).getStatus());
+        assertEquals("Invalid email format.", results.get(1).getMessage());
+        assertEquals(BatchRowResult.Status.DUPLICATE, results.get(2).getStatus());
+        assertEquals(BatchRowResult.Status.DUPLICATE, results.get(3).getStatus());
+        assertEquals(13, results.get(3).getIndex());
+        verify(userRepository, times(1)).findExistingEmails(any());
+        verify(userRepository).saveAll(List.of(valid));
+    }
+
+    @Test
+    void testCreateUsers_EmailsDifferingInCaseAreDuplicates() {
+
+        User first = new User(null, "John@Example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+        User repeated = new User(null, "john@example.com", "Jim", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+        User existing = new User(null, "existing@example.com", "Jane", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+        when(userRepository.findExistingEmails(any())).thenReturn(List.of("Existing@Example.com"));
+
+        List<BatchRowResult> results = userService.createUsers(List.of(first, repeated, existing), 0);
+
+        assertEquals(BatchRowResult.Status.CREATED, results.get(0).getStatus());
+        assertEquals(BatchRowResult.Status.DUPLICATE, results.get(1).getStatus());
+        assertEquals(BatchRowResult.Status.DUPLICATE, results.get(2).getStatus());
+        assertEquals("existing@example.com", results.get(2).getEmail());
+        verify(userRepository).saveAll(List.of(first));
+    }
+
+    @Test
+    void testCreateUsers_UniqueViolationRetriesRowByRow() {
+
+        User free = new User(null, "free@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+        User taken = new User(null, "taken@example.com", "Jane", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+        when(userRepository.saveAll(any())).thenAnswer(invocation -> {
+            free.setId(1L);
+            free.setVersion(0L);
+            throw new DataIntegrityViolationException("ux_users_email");
+        });
+        when(userRepository.saveAndFlush(free)).thenAnswer(invocation -> {
+            assertNull(free.getId());
+            assertNull(free.getVersion());
+            free.setId(2L);
+            return free;
+        });
+        when(userRepository.saveAndFlush(taken)).thenThrow(new DataIntegrityViolationException("ux_users_email"));
+
+        List<BatchRowResult> results = userService.createValidatedUsers(List.of(free, taken), 0);
+
+        assertEquals(BatchRowResult.Status.CREATED, results.get(0).getStatus());
+        assertEquals(2L, results.get(0).getId());
+        assertEquals(BatchRowResult.Status.DUPLICATE, results.get(1).getStatus());
+        verify(changeFeed, never()).appendCreated(anyList());
+        verify(changeFeed).appendCreated(free);
+    }
+
+    @Test
+    void testTryCreateUser_ReturnsEveryErrorWithoutSaving() {
+
+        User user = new User(null, "not-an-email", "", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "123");
+
+        UserResult result = userService.tryCreateUser(user);
+
+        assertEquals(UserResult.Status.INVALID, result.getStatus());
+        assertEquals(List.of("First name cannot be empty.", "Invalid email format.", "Invalid phone number format."), result.getErrors());
+        verify(userRepository, never()).save(any());
+    }
+
+    @Test
+    void testFindUserById_MissingUserIsEmpty() {
+
+        when(userRepository.findById(7L)).thenReturn(Optional.empty());
+
+        assertTrue(userService.findUserById(7L).isEmpty());
+    }
+
+    @Test
+    void testTryUpdateUser_NotFoundAndStaleAreResults() {
+
+        User existingUser = new User(1L, "john@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+        existingUser.setVersion(3L);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(existingUser));
+        when(userRepository.findById(2L)).thenReturn(Optional.empty());
+
+        assertEquals(UserResult.Status.NOT_FOUND, userService.tryUpdateUser(new User(), 2L, null).getStatus());
+        assertEquals(UserResult.Status.STALE, userService.tryUpdateUser(new User(), 1L, 2L).getStatus());
+        verify(userRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void testCreateUser_InsertsWithoutLookup() {
+
+        User user = new User(null, "new@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+        when(userRepository.saveAndFlush(user)).thenReturn(user);
+
+        userService.createUser(user);
+
+        verify(userRepository, never()).findByEmail(any());
+        // the unique index is the only duplicate check, so the next attempt goes straight to the insert
+        when(userRepository.saveAndFlush(user)).thenThrow(new DataIntegrityViolationException("ux_users_email"));
+        assertThrows(IllegalArgumentException.class, () -> userService.createUser(user));
+        verify(userRepository, times(2)).saveAndFlush(user);
+        verify(userRepository, never()).findByEmail(any());
+    }
+
+    @Test
+    void testCreateUser_UniqueConstraintViolation() {
+
+        User user = new User(null, "new@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+        when(userRepository.saveAndFlush(user)).thenThrow(new DataIntegrityViolationException("ux_users_email"));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> userService.createUser(user));
+        assertEquals("This user already exists!", e.getMessage());
+    }
+
+    @Test
+    void testCreateUser_OtherIntegrityViolationsPropagate() {
+
+        User user = new User(null, "new@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("Column 'first_name' cannot be null");
+        when(userRepository.saveAndFlush(user)).thenThrow(violation);
+        when(userRepository.saveAll(any())).thenThrow(violation);
+
+        assertThrows(DataIntegrityViolationException.class, () -> userService.tryCreateUser(user));
+        assertThrows(DataIntegrityViolationException.class, () -> userService.createValidatedUsers(List.of(user), 0));
+        // the batch is not retried row by row, that only sorts out which emails were taken
+        verify(userRepository, times(1)).saveAndFlush(user);
+    }
+
+    @Test
+    void testTryUpdateUser_OtherIntegrityViolationsPropagate() {
+
+        User existing = new User(1L, "john@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+        when(userRepository.findById(1L)).thenReturn(Optional.of(existing));
+        when(userRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("Data too long for column 'address'"));
+
+        assertThrows(DataIntegrityViolationException.class, () -> userService.tryUpdateUser(new User(), 1L, null));
+    }
+
+    @Test
+    void testCreateUsers_EmailIndexMissSkipsExistingEmailQuery() {
+
+        UserServiceImpl indexedUserService = userService(new EmailFingerprintIndex(true));
+        User user = new User(null, "new@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+
+        List<BatchRowResult> results = indexedUserService.createUsers(List.of(user), 0);
+
+        assertEquals(BatchRowResult.Status.CREATED, results.get(0).getStatus());
+        verify(userRepository, never()).findExistingEmails(any());
+    }
+
+    @Test
+    void testCreateValidatedUsers_SkipsValidation() {
+
+        User user = new User(null, "new@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+        User repeated = new User(null, "new@example.com", "Jim", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+        when(userRepository.findExistingEmails(any())).thenReturn(Collections.emptyList());
+
+        List<BatchRowResult> results = userService.createValidatedUsers(List.of(user, repeated), 0);
+
+        assertEquals(BatchRowResult.Status.CREATED, results.get(0).getStatus());
+        assertEquals(BatchRowResult.Status.DUPLICATE, results.get(1).getStatus());
+        verify(userValidator, never()).validate(any());
+        verify(userRepository).saveAll(List.of(user));
+    }
+
     @Test
     public void testGetUserById_ValidId() {
 
@@ -185,6 +440,213 @@ public class UserServiceImplTest {
         assertEquals(user, actualUser);
     }
 
+    @Test
+    public void testGetUserById_ServedFromCache() {
+
+        Long id = 1L;
+        User user = new User(id, "test@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        when(userRepository.findById(id)).thenReturn(Optional.of(user));
+
+        assertEquals(user, userService.getUserById(id));
+        assertEquals(user, userService.getUserById(id));
+
+        verify(userRepository, times(1)).findById(id);
+    }
+
+    @Test
+    public void testGetUserById_RowReadBeforeAWriteIsNotCached() {
+
+        Long id = 1L;
+        User user = new User(id, "test@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        when(userRepository.findById(id)).thenAnswer(invocation -> {
+            changeTracker.recordWrite(id);
+            return Optional.of(user);
+        });
+
+        assertEquals(user, userService.getUserById(id));
+
+        assertNull(cacheManager.getCache(UserServiceImpl.USERS_CACHE).get(id));
+    }
+
+    @Test
+    public void testGetUserById_WriteOfAnotherInstanceEvicts() {
+
+        Long id = 1L;
+        User user = new User(id, "test@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        when(userRepository.findById(id)).thenReturn(Optional.of(user));
+        userService.getUserById(id);
+
+        changeTracker.recordWrite(id);
+
+        assertNull(cacheManager.getCache(UserServiceImpl.USERS_CACHE).get(id));
+    }
+
+    @Test
+    public void testGetUserById_ReadFromALaggingReplicaIsNotCached() {
+
+        Long id = 1L;
+        User user = new User(id, "test@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        when(userRepository.findById(id)).thenReturn(Optional.of(user));
+        UserChangeTracker.Fence fence = new UserChangeTracker.Fence(changeTracker.current().number(), 10, 12, 2);
+        doReturn(fence).when(changeTracker).fence();
+        when(changeFeed.holds(fence)).thenReturn(false);
+
+        assertEquals(user, userService.getUserById(id));
+        assertEquals(user, userService.getUserById(id));
+
+        verify(userRepository, times(2)).findById(id);
+        assertNull(cacheManager.getCache(UserServiceImpl.USERS_CACHE).get(id));
+    }
+
+    @Test
+    public void testCreateUser_ConcurrentSameEmailInsertsOnce() throws Exception {
+
+        CountDownLatch inserting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userRepository.saveAndFlush(any())).thenAnswer(invocation -> {
+            inserting.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return invocation.getArgument(0);
+        });
+        User first = new User(null, "test@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        User second = new User(null, "Test@Example.com", "Jane", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+
+        CompletableFuture<UserResult> leader = CompletableFuture.supplyAsync(() -> userService.tryCreateUser(first));
+        assertTrue(inserting.await(5, TimeUnit.SECONDS));
+        CompletableFuture<UserResult> follower = CompletableFuture.supplyAsync(() -> userService.tryCreateUser(second));
+        Thread.sleep(100);
+        assertFalse(follower.isDone());
+        release.countDown();
+
+        assertEquals(UserResult.Status.OK, leader.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(UserResult.Status.DUPLICATE, follower.get(5, TimeUnit.SECONDS).getStatus());
+        verify(userRepository, times(1)).saveAndFlush(any());
+    }
+
+    @Test
+    public void testCreateUser_WaiterRetriesWhenFirstAttemptFails() throws Exception {
+
+        CountDownLatch inserting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userRepository.saveAndFlush(any())).thenAnswer(invocation -> {
+            inserting.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            throw new QueryTimeoutException("timeout");
+        }).thenAnswer(invocation -> invocation.getArgument(0));
+        User first = new User(null, "test@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        User second = new User(null, "test@example.com", "Jane", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+
+        CompletableFuture<UserResult> leader = CompletableFuture.supplyAsync(() -> userService.tryCreateUser(first));
+        assertTrue(inserting.await(5, TimeUnit.SECONDS));
+        CompletableFuture<UserResult> follower = CompletableFuture.supplyAsync(() -> userService.tryCreateUser(second));
+        Thread.sleep(100);
+        release.countDown();
+
+        assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertEquals(UserResult.Status.OK, follower.get(5, TimeUnit.SECONDS).getStatus());
+        verify(userRepository, times(2)).saveAndFlush(any());
+    }
+
+    @Test
+    public void testCreateUser_WaiterGivesUpOnAStuckRegistration() throws Exception {
+
+        UserServiceImpl userService = userService(emailIndex, 100);
+        CountDownLatch inserting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userRepository.saveAndFlush(any())).thenAnswer(invocation -> {
+            inserting.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return invocation.getArgument(0);
+        });
+        User first = new User(null, "test@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        User second = new User(null, "test@example.com", "Jane", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+
+        CompletableFuture<UserResult> leader = CompletableFuture.supplyAsync(() -> userService.tryCreateUser(first));
+        assertTrue(inserting.await(5, TimeUnit.SECONDS));
+        try {
+            UserResult waited = userService.tryCreateUser(second);
+
+            assertEquals(UserResult.Status.STALE, waited.getStatus());
+            assertEquals("A registration of this email is still in progress, retry shortly.", waited.getMessage());
+        } finally {
+            release.countDown();
+        }
+        // the leader is unaffected by the waiter giving up
+        assertEquals(UserResult.Status.OK, leader.get(5, TimeUnit.SECONDS).getStatus());
+        verify(userRepository, times(1)).saveAndFlush(any());
+    }
+
+    @Test
+    public void testUpdateUser_EmailChangeEvictsCachedEntries() {
+
+        Long id = 1L;
+        User cached = new User(id, "old@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        User existing = new User(id, "old@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        when(userRepository.findById(id)).thenReturn(Optional.of(cached), Optional.of(existing));
+        when(userRepository.saveAndFlush(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        userService.getUserById(id);
+
+        User update = new User(null, "new@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        userService.updateUser(update, id);
+
+        assertNull(cacheManager.getCache(UserServiceImpl.USERS_CACHE).get(id));
+    }
+
+    @Test
+    public void testUpdateUser_EmailCaseChangeKeepsIndexEntry() {
+
+        EmailFingerprintIndex index = new EmailFingerprintIndex(true);
+        index.add("john@example.com");
+        UserServiceImpl indexedUserService = userService(index);
+        User existing = new User(1L, "john@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        when(userRepository.findById(1L)).thenReturn(Optional.of(existing));
+        when(userRepository.saveAndFlush(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        User patch = new User();
+        patch.setEmail("John@Example.com");
+
+        indexedUserService.updateUser(patch, 1L);
+
+        assertTrue(index.mightContain("john@example.com"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testDeleteUser_EvictsCachedEntries() {
+
+        Long id = 1L;
+        User user = new User(id, "test@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        user.setVersion(3L);
+        when(userRepository.findById(id)).thenReturn(Optional.of(user));
+        when(userRepository.deleteUserByIdAndVersion(id, 3L)).thenReturn(1);
+        userService.getUserById(id);
+
+        userService.deleteUser(id);
+
+        assertNull(cacheManager.getCache(UserServiceImpl.USERS_CACHE).get(id));
+    }
+
+    @Test
+    public void testDeleteUser_EvictsOnlyAfterCommit() {
+
+        Long id = 1L;
+        User user = new User(id, "test@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        user.setVersion(3L);
+        when(userRepository.findById(id)).thenReturn(Optional.of(user));
+        when(userRepository.deleteUserByIdAndVersion(id, 3L)).thenReturn(1);
+        userService.getUserById(id);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userService.deleteUser(id);
+            assertNotNull(cacheManager.getCache(UserServiceImpl.USERS_CACHE).get(id));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertNull(cacheManager.getCache(UserServiceImpl.USERS_CACHE).get(id));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
     @Test
     void testGetUserById_UserNotFound() {
 
@@ -198,8 +660,8 @@ public class UserServiceImplTest {
 
     @Test
     public void testListUsers_EmptyList() {
-        Mockito.when(userRepository.findAll()).thenReturn(Collections.emptyList());
-        List<User> actualUsers = userService.listUsers();
+        Mockito.when(userRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(50))).thenReturn(Collections.emptyList());
+        List<User> actualUsers = userService.listUsers(null, 50);
         assertTrue(actualUsers.isEmpty());
     }
 
@@ -215,36 +677,247 @@ public class UserServiceImplTest {
         user2.setLastName("testLastName");
 
         List<User> expectedUsers = Arrays.asList(user1, user2);
-        Mockito.when(userRepository.findAll()).thenReturn(expectedUsers);
+        Mockito.when(userRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(50))).thenReturn(expectedUsers);
 
-        List<User> actualUsers = userService.listUsers();
+        List<User> actualUsers = userService.listUsers(null, 50);
 
         assertEquals(expectedUsers, actualUsers);
         assertEquals(2, actualUsers.size());
     }
 
+    @Test
+    public void testListUsers_AfterCursor() {
+
+        User user = new User();
+        user.setId(11L);
+        Mockito.when(userRepository.findByIdGreaterThanOrderByIdAsc(10L, Limit.of(1))).thenReturn(List.of(user));
+
+        List<User> actualUsers = userService.listUsers(10L, 1);
+
+        assertEquals(List.of(user), actualUsers);
+    }
+
+    @Test
+    public void testListUserViews_AlwaysSelectsCursorField() {
+
+        List<Map<String, Object>> views = List.of(Map.of("id", 1L, "email", "test@example.com"));
+        Mockito.when(userRepository.findViews(EnumSet.of(UserField.ID, UserField.EMAIL), 0L, 50)).thenReturn(views);
+
+        List<Map<String, Object>> actualViews = userService.listUserViews(null, 50, EnumSet.of(UserField.EMAIL));
+
+        assertEquals(views, actualViews);
+    }
+
+    @Test
+    public void testListUserViews_RepeatedPageServedFromCacheUntilWrite() {
+
+        List<Map<String, Object>> views = List.of(Map.of("id", 1L, "email", "test@example.com"));
+        Mockito.when(userRepository.findViews(EnumSet.of(UserField.ID, UserField.EMAIL), 0L, 50)).thenReturn(views);
+
+        userService.listUserViews(null, 50, EnumSet.of(UserField.EMAIL));
+        assertEquals(views, userService.listUserViews(null, 50, EnumSet.of(UserField.EMAIL)));
+        verify(userRepository, times(1)).findViews(any(), anyLong(), anyInt());
+
+        User user = new User(null, "new@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+        when(userRepository.saveAndFlush(user)).thenReturn(user);
+        userService.createUser(user);
+
+        userService.listUserViews(null, 50, EnumSet.of(UserField.EMAIL));
+        verify(userRepository, times(2)).findViews(any(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void testListUserViews_PageOfAnUnfencedGenerationIsNotCached() {
+
+        List<Map<String, Object>> views = List.of(Map.of("id", 1L, "email", "test@example.com"));
+        Mockito.when(userRepository.findViews(EnumSet.of(UserField.ID, UserField.EMAIL), 0L, 50)).thenReturn(views);
+        doReturn(null).when(changeTracker).fence();
+
+        userService.listUserViews(null, 50, EnumSet.of(UserField.EMAIL));
+        assertEquals(views, userService.listUserViews(null, 50, EnumSet.of(UserField.EMAIL)));
+
+        verify(userRepository, times(2)).findViews(any(), anyLong(), anyInt());
+        verify(changeFeed, never()).holds(any());
+    }
+
+    @Test
+    public void testGetUserViewsInDateRange_AlwaysSelectsCursorFields() {
+
+        LocalDate startDate = LocalDate.of(1990, 1, 1);
+        LocalDate endDate = LocalDate.of(2000, 1, 1);
+        Mockito.when(userRepository.findViewsByDateOfBirthBetween(
+                        EnumSet.of(UserField.ID, UserField.EMAIL, UserField.DATE_OF_BIRTH), startDate, endDate, null, 10))
+                .thenReturn(Collections.emptyList());
+
+        List<Map<String, Object>> actualViews = userService.getUserViewsInDateRange(startDate, endDate, null, 10,
+                EnumSet.of(UserField.EMAIL));
+
+        assertTrue(actualViews.isEmpty());
+        verify(userRepository, never()).findByDateOfBirthBetweenOrderByDateOfBirthAscIdAsc(any(), any(), any());
+    }
+
+    @Test
+    public void testSearchUsers_KeepsIndexOrderAndSkipsMissingRows() {
+
+        Mockito.when(searchIndex.search("jo", 0L, 3)).thenReturn(List.of(5L, 2L, 9L));
+        Mockito.when(userRepository.findViewsByIds(EnumSet.of(UserField.ID, UserField.EMAIL), List.of(5L, 2L, 9L)))
+                .thenReturn(List.of(Map.of("id", 2L, "email", "jo@example.com"), Map.of("id", 5L, "email", "john@example.com")));
+
+        UserPage<Long> page = userService.searchUsers("jo", null, 3, EnumSet.of(UserField.EMAIL));
+
+        assertEquals(List.of(5L, 2L), page.getUsers().stream().map(view -> view.get("id")).toList());
+        assertEquals(9L, page.getNextCursor());
+    }
+
+    @Test
+    public void testSearchUsers_ShortPageOfHitsEndsThePages() {
+
+        Mockito.when(searchIndex.search("jo", 4L, 3)).thenReturn(List.of(7L));
+        Mockito.when(userRepository.findViewsByIds(EnumSet.of(UserField.ID, UserField.EMAIL), List.of(7L)))
+                .thenReturn(List.of(Map.of("id", 7L, "email", "jo@example.com")));
+
+        assertNull(userService.searchUsers("jo", 4L, 3, EnumSet.of(UserField.EMAIL)).getNextCursor());
+    }
+
+    @Test
+    public void testSearchUsers_BlankQuery() {
+
+        assertThrows(IllegalArgumentException.class, () -> userService.searchUsers(" ", null, 20, EnumSet.allOf(UserField.class)));
+        verifyNoInteractions(searchIndex);
+    }
+
+    @Test
+    public void testStreamUsers_DetachesEachUser() {
+
+        User user1 = new User();
+        User user2 = new User();
+        Mockito.when(userRepository.streamAll()).thenReturn(Stream.of(user1, user2));
+
+        List<User> streamed = new ArrayList<>();
+        userService.streamUsers(streamed::add);
+
+        assertEquals(List.of(user1, user2), streamed);
+        verify(entityManager).detach(user1);
+        verify(entityManager).detach(user2);
+    }
+
     @Test
     public void testDeleteUser_ExistingUser() {
 
         Long id = 1L;
-        User user = new User();
-        user.setId(id);
-        user.setFirstName("TestFirstName");
-        user.setLastName("testLastName");
-        Mockito.when(userRepository.findById(id)).thenReturn(Optional.of(user));
+        User user = new User(id, "test@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        Mockito.when(userRepository.lockById(id)).thenReturn(Optional.of(user));
+        Mockito.when(userRepository.deleteUserById(id)).thenReturn(1);
 
         userService.deleteUser(id);
+
+        verify(userRepository, times(1)).deleteUserById(id);
+        // the audit log gets the deleted values whether or not the user was cached
+        verify(auditLog).recordDeleted(id, user);
+    }
+
+    @Test
+    public void testDeleteUser_CachedUserIsDeletedInOneStatement() {
+
+        Long id = 1L;
+        User user = new User(id, "test@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        user.setVersion(3L);
+        when(userRepository.findById(id)).thenReturn(Optional.of(user));
+        when(userRepository.deleteUserByIdAndVersion(id, 3L)).thenReturn(1);
+        userService.getUserById(id);
+
+        assertEquals(UserResult.Status.OK, userService.tryDeleteUser(id, 3L).getStatus());
+
+        verify(userRepository, never()).lockById(any());
+        verify(userRepository, never()).deleteUserById(any());
+        verify(auditLog).recordDeleted(id, user);
+    }
+
+    @Test
+    public void testDeleteUser_OutdatedCachedUserFallsBackToTheLockedRead() {
+
+        Long id = 1L;
+        User cached = new User(id, "test@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        cached.setVersion(3L);
+        User current = new User(id, "test@example.com", "John", "Smith", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        current.setVersion(4L);
+        when(userRepository.findById(id)).thenReturn(Optional.of(cached));
+        userService.getUserById(id);
+        // another instance updated the user, the delete guarded by the cached version misses
+        when(userRepository.deleteUserByIdAndVersion(id, 3L)).thenReturn(0);
+        when(userRepository.lockById(id)).thenReturn(Optional.of(current));
+
+        userService.deleteUser(id);
+
+        verify(userRepository).deleteUserById(id);
+        verify(auditLog).recordDeleted(id, current);
     }
 
     @Test
     void testDeleteUser_UserNotFound() {
 
         Long userId = 1L;
-        when(userRepository.findById(userId)).thenReturn(Optional.empty());
 
         EntityNotFoundException exception = assertThrows(EntityNotFoundException.class, () -> userService.deleteUser(userId));
         assertEquals("User not found with id " + userId, exception.getMessage());
-        verify(userRepository, times(1)).findById(userId);
+        verify(userRepository, never()).deleteUserById(any());
+    }
+
+    @Test
+    void testDeleteUser_StaleVersion() {
+
+        User user = new User(1L, "test@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        user.setVersion(3L);
+        when(userRepository.lockById(1L)).thenReturn(Optional.of(user));
+
+        assertThrows(OptimisticLockingFailureException.class, () -> userService.deleteUser(1L, 2L));
+        verify(userRepository, never()).deleteUserById(any());
+    }
+
+    @Test
+    void testDeleteUser_VersionedUserNotFound() {
+
+        assertThrows(EntityNotFoundException.class, () -> userService.deleteUser(1L, 2L));
+    }
+
+    @Test
+    void testTryDeleteUser_NotFoundAndStaleAreResults() {
+
+        User user = new User(1L, "test@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "0661234567");
+        user.setVersion(3L);
+        when(userRepository.lockById(1L)).thenReturn(Optional.of(user), Optional.empty());
+
+        assertEquals(UserResult.Status.STALE, userService.tryDeleteUser(1L, 2L).getStatus());
+        assertEquals(UserResult.Status.NOT_FOUND, userService.tryDeleteUser(1L, 2L).getStatus());
+        verify(changeFeed, never()).appendDeleted(any());
+    }
+
+    @Test
+    void testTryUpdateUser_VersionCheckFailingOnFlushIsStale() {
+
+        User existingUser = new User(1L, "john@example.com", "John", "Smith", LocalDate.of(1990, 5, 15), "123 Main St", "0661234567");
+        existingUser.setVersion(3L);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(existingUser));
+        when(userRepository.saveAndFlush(any())).thenThrow(new OptimisticLockingFailureException("stale"));
+        User patch = new User();
+        patch.setFirstName("Johnny");
+
+        assertEquals(UserResult.Status.STALE, userService.tryUpdateUser(patch, 1L, 3L).getStatus());
+        verify(changeFeed, never()).appendUpdated(any());
+    }
+
+    @Test
+    void testUpdateUser_StaleVersion() {
+
+        User existingUser = new User(1L, "john@example.com", "John", "Smith", LocalDate.of(1990, 5, 15), "123 Main St", "0661234567");
+        existingUser.setVersion(3L);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(existingUser));
+        User patch = new User();
+        patch.setFirstName("Johnny");
+
+        assertThrows(OptimisticLockingFailureException.class, () -> userService.updateUser(patch, 1L, 2L));
+        assertEquals("John", existingUser.getFirstName());
+        verify(userRepository, never()).saveAndFlush(any());
     }
 
     @Test
@@ -255,7 +928,7 @@ public class UserServiceImplTest {
         User updatedUser = new User();
         updatedUser.setEmail("new@example.com");
         assertThrows(IllegalArgumentException.class, () -> userService.updateUser(updatedUser, userId));
-        verify(userRepository, never()).save(any());
+        verify(userRepository, never()).saveAndFlush(any());
     }
 
     @Test
@@ -265,8 +938,7 @@ public class UserServiceImplTest {
         User existingUser = new User(userId, "john@example.com", "Doe", "Smith", LocalDate.of(1990, 5, 15), "123 Main St", "1234567890");
         User updateUser = new User(userId, "jane@example.com", "Doe", "Smith", LocalDate.of(1992, 8, 21), "456 Elm St", "0987654321");
         when(userRepository.findById(userId)).thenReturn(Optional.of(existingUser));
-        when(userRepository.findByEmail(updateUser.getEmail())).thenReturn(Optional.empty());
-        when(userRepository.save(any())).thenReturn(updateUser);
+        when(userRepository.saveAndFlush(any())).thenReturn(updateUser);
 
         User updatedUser = userService.updateUser(updateUser, userId);
 
@@ -279,8 +951,45 @@ public class UserServiceImplTest {
         assertEquals(updateUser.getPhoneNumber(), updatedUser.getPhoneNumber());
 
         verify(userRepository, times(1)).findById(userId);
-        verify(userRepository, times(1)).findByEmail(updateUser.getEmail());
-        verify(userRepository, times(1)).save(updateUser);
+        verify(userRepository, never()).findByEmail(anyString());
+        verify(userRepository, times(1)).saveAndFlush(existingUser);
+    }
+
+    @Test
+    void testUpdateUser_AuditsValuesFromBeforeThePatch() {
+
+        User existingUser = new User(1L, "john@example.com", "John", "Doe", LocalDate.of(1990, 5, 15), "kyiv", "+380661234567");
+        when(userRepository.findById(1L)).thenReturn(Optional.of(existingUser));
+        when(userRepository.saveAndFlush(existingUser)).thenReturn(existingUser);
+        User patch = new User();
+        patch.setAddress("lviv");
+
+        userService.updateUser(patch, 1L);
+
+        ArgumentCaptor<User> before = ArgumentCaptor.forClass(User.class);
+        verify(auditLog).recordUpdated(before.capture(), eq(existingUser));
+        verify(changeFeed).appendUpdated(existingUser);
+        assertEquals("kyiv", before.getValue().getAddress());
+        assertEquals("lviv", existingUser.getAddress());
+    }
+
+    @Test
+    void testUpdateUser_PartialUpdateKeepsOmittedFields() {
+
+        Long userId = 1L;
+        User existingUser = new User(userId, "john@example.com", "John", "Smith", LocalDate.of(1990, 5, 15), "123 Main St", "0661234567");
+        when(userRepository.findById(userId)).thenReturn(Optional.of(existingUser));
+        when(userRepository.saveAndFlush(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        User patch = new User();
+        patch.setAddress("456 Elm St");
+
+        User updatedUser = userService.updateUser(patch, userId);
+
+        assertEquals("john@example.com", updatedUser.getEmail());
+        assertEquals("John", updatedUser.getFirstName());
+        assertEquals(LocalDate.of(1990, 5, 15), updatedUser.getDateOfBirth());
+        assertEquals("456 Elm St", updatedUser.getAddress());
     }
 
     @Test
@@ -298,17 +1007,20 @@ public class UserServiceImplTest {
         existingUser2.setFirstName("Jane");
         existingUser2.setLastName("Doe");
 
+        existingUser1.setDateOfBirth(LocalDate.of(1990, 1, 1));
+
         when(userRepository.findById(1L)).thenReturn(Optional.of(existingUser1));
         when(userRepository.findById(2L)).thenReturn(Optional.of(existingUser2));
-        when(userRepository.findByEmail("new@example.com")).thenReturn(Optional.of(existingUser2));
+        when(userRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("ux_users_email"));
 
         User updatedUser = new User();
         updatedUser.setEmail("new@example.com");
         updatedUser.setFirstName("John");
 
-        assertThrows(IllegalArgumentException.class, () -> userService.updateUser(updatedUser, 1L));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> userService.updateUser(updatedUser, 1L));
 
-        verify(userRepository, never()).save(any());
+        assertEquals("This user already exists!", exception.getMessage());
+        verify(userRepository, never()).findByEmail(anyString());
     }
 
     @Test
@@ -347,13 +1059,51 @@ public class UserServiceImplTest {
         LocalDate endDate = LocalDate.of(2024, 05, 12);
 
         List<User> expectedUsers = Arrays.asList(new User(), new User());
-        when(userRepository.findByDateOfBirthBetween(startDate, endDate)).thenReturn(expectedUsers);
+        when(userRepository.findByDateOfBirthBetweenOrderByDateOfBirthAscIdAsc(startDate, endDate, Limit.of(50))).thenReturn(expectedUsers);
 
-        List<User> actualUsers = userService.getUsersInDateRange(startDate, endDate);
+        List<User> actualUsers = userService.getUsersInDateRange(startDate, endDate, null, 50);
 
         assertNotNull(actualUsers);
         assertEquals(expectedUsers.size(), actualUsers.size());
-        verify(userRepository).findByDateOfBirthBetween(startDate, endDate);
+        verify(userRepository).findByDateOfBirthBetweenOrderByDateOfBirthAscIdAsc(startDate, endDate, Limit.of(50));
+    }
+
+    @Test
+    public void testGetUsersInDateRange_AfterCursor() {
+
+        LocalDate startDate = LocalDate.of(2024, 01, 01);
+        LocalDate endDate = LocalDate.of(2024, 05, 12);
+        BirthDateCursor after = new BirthDateCursor(LocalDate.of(2024, 02, 01), 42L);
+
+        List<User> expectedUsers = Arrays.asList(new User(), new User());
+        when(userRepository.findByDateOfBirthBetweenAfter(startDate, endDate, after.getDateOfBirth(), 42L, Limit.of(2))).thenReturn(expectedUsers);
+
+        List<User> actualUsers = userService.getUsersInDateRange(startDate, endDate, after, 2);
+
+        assertEquals(expectedUsers, actualUsers);
+        verify(userRepository, never()).findByDateOfBirthBetweenOrderByDateOfBirthAscIdAsc(any(), any(), any());
+    }
+
+    @Test
+    public void testCountUsersInDateRange() {
+
+        LocalDate startDate = LocalDate.of(2024, 01, 01);
+        LocalDate endDate = LocalDate.of(2024, 05, 12);
+        when(userRepository.countByDateOfBirthBetween(startDate, endDate)).thenReturn(3L);
+
+        assertEquals(3L, userService.countUsersInDateRange(startDate, endDate));
+    }
+
+    @Test
+    public void testDateRange_MissingBoundIsRejected() {
+
+        LocalDate date = LocalDate.of(2024, 1, 1);
+
+        DateOfBirthException e = assertThrows(DateOfBirthException.class,
+                () -> userService.getUsersInDateRange(date, null, null, 50));
+        assertEquals("Date of birth cannot be empty.", e.getMessage());
+        assertThrows(DateOfBirthException.class, () -> userService.countUsersInDateRange(null, date));
+        verifyNoInteractions(userRepository);
     }
 
     @Test
@@ -362,13 +1112,13 @@ public class UserServiceImplTest {
         LocalDate startDate = LocalDate.of(2025, 01, 01);
         LocalDate endDate = LocalDate.of(2025, 12, 31);
 
-        when(userRepository.findByDateOfBirthBetween(startDate, endDate)).thenReturn(Collections.emptyList());
+        when(userRepository.findByDateOfBirthBetweenOrderByDateOfBirthAscIdAsc(startDate, endDate, Limit.of(50))).thenReturn(Collections.emptyList());
 
-        List<User> actualUsers = userService.getUsersInDateRange(startDate, endDate);
+        List<User> actualUsers = userService.getUsersInDateRange(startDate, endDate, null, 50);
 
         assertNotNull(actualUsers);
         assertTrue(actualUsers.isEmpty());
-        verify(userRepository).findByDateOfBirthBetween(startDate, endDate);
+        verify(userRepository).findByDateOfBirthBetweenOrderByDateOfBirthAscIdAsc(startDate, endDate, Limit.of(50));
     }
 
     @Test
@@ -449,4 +1199,15 @@ public class UserServiceImplTest {
             }
         });
     }
+
+    private UserServiceImpl userService(EmailFingerprintIndex index) {
+        return userService(index, 5000);
+    }
+
+    private UserServiceImpl userService(EmailFingerprintIndex index, long registrationWaitMillis) {
+        return new UserServiceImpl(userRepository, entityManager, userValidator, cacheManager, meterRegistry, index,
+                searchIndex, changeTracker, auditLog, changeFeed,
+                new UserInserter(userRepository, entityManager, changeFeed, changeTracker, auditLog),
+                new UserCacheLoader(changeTracker, changeFeed), registrationWaitMillis);
+    }
 }
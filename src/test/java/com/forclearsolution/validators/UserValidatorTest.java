@@ -0,0 +1,63 @@
+package com.forclearsolution.validators;
+
+import com.forclearsolution.models.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserValidatorTest {
+
+    private final UserValidator userValidator = new UserValidator(18);
+
+    @Test
+    void testValidate_ValidUser() {
+        User user = new User(null, "test@example.com", "John", "Doe", LocalDate.of(1990, 1, 1), "kyiv", "+380661234567");
+
+        assertTrue(userValidator.validate(user).isEmpty());
+    }
+
+    @Test
+    void testValidate_CollectsAllErrors() {
+        User user = new User(null, "invalid-email", "", null, LocalDate.now().plusDays(1), "kyiv", "123456");
+
+        List<String> errors = userValidator.validate(user);
+
+        assertEquals(List.of(
+                "First name cannot be empty.",
+                "Last name cannot be empty.",
+                "Invalid email format.",
+                "Invalid phone number format.",
+                "The date of birth cannot be in the future."), errors);
+    }
+
+    @Test
+    void testValidate_EmptyDateOfBirth() {
+        User user = new User(null, "test@example.com", "John", "Doe", null, "kyiv", "0661234567");
+
+        assertEquals(List.of("Date of birth cannot be empty."), userValidator.validate(user));
+    }
+
+    @Test
+    void testValidate_Underage() {
+        User user = new User(null, "test@example.com", "John", "Doe", LocalDate.now().minusYears(17), "kyiv", "0661234567");
+
+        assertEquals(List.of("To register, the user must be over 18 years old."), userValidator.validate(user));
+    }
+
+    @Test
+    void testValidate_ExactlyMinAge() {
+        User user = new User(null, "test@example.com", "John", "Doe", LocalDate.now().minusYears(18), "kyiv", "0661234567");
+
+        assertTrue(userValidator.validate(user).isEmpty());
+    }
+
+    @Test
+    void testIsValidPhoneNumber_NullOrEmpty() {
+        assertTrue(userValidator.isValidPhoneNumber(null));
+        assertTrue(userValidator.isValidPhoneNumber(""));
+        assertFalse(userValidator.isValidPhoneNumber("invalid-phone-number"));
+    }
+}